@@ -0,0 +1,459 @@
+package com.roadtrip;
+
+import com.roadtrip.algorithm.BranchAndBoundTour;
+import com.roadtrip.algorithm.DijkstraAlgorithm;
+import com.roadtrip.algorithm.DistanceMatrix;
+import com.roadtrip.algorithm.HeldKarpTour;
+import com.roadtrip.algorithm.IncrementalRoutePlanner;
+import com.roadtrip.algorithm.LinKernighanTour;
+import com.roadtrip.algorithm.LocalSearchTour;
+import com.roadtrip.algorithm.NearestNeighborTour;
+import com.roadtrip.algorithm.RouteOptimizer;
+import com.roadtrip.algorithm.RoutePortfolio;
+import com.roadtrip.algorithm.TourBound;
+import com.roadtrip.algorithm.TourStrategy;
+import com.roadtrip.model.Attraction;
+import com.roadtrip.model.City;
+import com.roadtrip.model.Graph;
+import com.roadtrip.model.Road;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 路线求解器的回归检查
+ * 在固定种子生成的路网上，把各访问顺序策略的结果与穷举或Held-Karp的最优解比较，
+ * 并检查后台改进的发布顺序、增量增删景点、起点与终点相同的环线，以及查询之后再加路时各搜索模式的结果。
+ * 有检查不通过时以状态1退出
+ */
+public class RouteSolverChecks {
+    
+    private static final long SEED = 42;
+    private static final int CITY_COUNT = 300;
+    private static final int ROADS_PER_CITY = 4;
+    
+    private static int checks;
+    private static int failures;
+    
+    public static void main(String[] args) {
+        Random random = new Random(SEED);
+        Graph graph = randomRoadNetwork(random);
+        List<City> cities = new ArrayList<>(graph.getCities());
+        cities.sort((a, b) -> a.getFullName().compareTo(b.getFullName()));
+        
+        System.out.println("\n=== Exact strategies against brute force ===");
+        checkExactStrategies(graph, cities, random);
+        
+        System.out.println("\n=== Heuristic strategies against Held-Karp ===");
+        checkHeuristicStrategies(graph, cities, random);
+        
+        System.out.println("\n=== Portfolio against Held-Karp ===");
+        checkPortfolio(graph, cities, random);
+        
+        System.out.println("\n=== Anytime route publishing ===");
+        checkRouteWithin(graph, cities, random);
+        
+        System.out.println("\n=== Incremental route editing ===");
+        checkIncrementalPlanner(graph, cities, random, false);
+        checkIncrementalPlanner(graph, cities, random, true);
+        
+        System.out.println("\n=== Adding a road after a query ===");
+        checkAddRoadAfterQuery();
+        
+        System.out.println("\n" + (checks - failures) + " of " + checks + " checks passed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Held-Karp和分支定界与穷举比较，较多景点时分支定界与Held-Karp比较；每三次中有一次起点与终点相同
+     */
+    private static void checkExactStrategies(Graph graph, List<City> cities, Random random) {
+        DijkstraAlgorithm dijkstra = new DijkstraAlgorithm(graph);
+        HeldKarpTour heldKarp = new HeldKarpTour();
+        BranchAndBoundTour branchAndBound = new BranchAndBoundTour();
+        
+        for (int trial = 0; trial < 60; trial++) {
+            DistanceMatrix matrix = randomMatrix(dijkstra, cities, random, 1 + trial % 8, trial % 3 == 0);
+            long optimum = bruteForce(matrix);
+            check("Held-Karp, " + describe(matrix), cost(matrix, heldKarp.order(matrix)) == optimum);
+            check("branch and bound, " + describe(matrix), cost(matrix, branchAndBound.order(matrix)) == optimum);
+        }
+        for (int trial = 0; trial < 10; trial++) {
+            DistanceMatrix matrix = randomMatrix(dijkstra, cities, random, 12 + trial % 5, trial % 3 == 0);
+            long optimum = cost(matrix, heldKarp.order(matrix));
+            BranchAndBoundTour.Result result = branchAndBound.solve(matrix);
+            check("branch and bound, " + describe(matrix),
+                    result.isOptimal() && cost(matrix, result.getOrder()) == optimum);
+        }
+    }
+    
+    /**
+     * 局部搜索和Lin-Kernighan的结果必须是合法的访问顺序，不短于最优解，也不长于作为起点的最近邻顺序
+     */
+    private static void checkHeuristicStrategies(Graph graph, List<City> cities, Random random) {
+        DijkstraAlgorithm dijkstra = new DijkstraAlgorithm(graph);
+        HeldKarpTour heldKarp = new HeldKarpTour();
+        TourStrategy greedy = new NearestNeighborTour();
+        TourStrategy localSearch = new LocalSearchTour(greedy);
+        TourStrategy linKernighan = new LinKernighanTour(localSearch, 20);
+        
+        long optimalTotal = 0;
+        long localSearchTotal = 0;
+        long linKernighanTotal = 0;
+        for (int trial = 0; trial < 40; trial++) {
+            DistanceMatrix matrix = randomMatrix(dijkstra, cities, random, 3 + trial % 14, trial % 3 == 0);
+            long optimum = cost(matrix, heldKarp.order(matrix));
+            long greedyCost = cost(matrix, greedy.order(matrix));
+            long localSearchCost = cost(matrix, localSearch.order(matrix));
+            long linKernighanCost = cost(matrix, linKernighan.order(matrix));
+            check("local search, " + describe(matrix), localSearchCost >= optimum && localSearchCost <= greedyCost);
+            check("Lin-Kernighan, " + describe(matrix),
+                    linKernighanCost >= optimum && linKernighanCost <= localSearchCost);
+            optimalTotal += optimum;
+            localSearchTotal += localSearchCost;
+            linKernighanTotal += linKernighanCost;
+        }
+        System.out.printf("local search / optimum = %.4f, Lin-Kernighan / optimum = %.4f%n",
+                localSearchTotal / (double) optimalTotal, linKernighanTotal / (double) optimalTotal);
+    }
+    
+    /**
+     * 组合求解器中包含Held-Karp，景点不多时结果必须是已证明的最优解
+     */
+    private static void checkPortfolio(Graph graph, List<City> cities, Random random) {
+        DijkstraAlgorithm dijkstra = new DijkstraAlgorithm(graph);
+        HeldKarpTour heldKarp = new HeldKarpTour();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            RoutePortfolio portfolio = RoutePortfolio.withDefaultStrategies(graph,
+                    DijkstraAlgorithm.SearchMode.DIJKSTRA, executor);
+            for (int trial = 0; trial < 10; trial++) {
+                DistanceMatrix matrix = randomMatrix(dijkstra, cities, random, 2 + trial, trial % 3 == 0);
+                long optimum = cost(matrix, heldKarp.order(matrix));
+                RoutePortfolio.Result result = portfolio.findBestRoute(startOf(matrix), endOf(matrix),
+                        attractionsOf(matrix), Duration.ofSeconds(10));
+                check("portfolio, " + describe(matrix) + " (" + result.getStrategyName() + ")",
+                        result.isOptimal() && result.getRoute().getTotalDistance() == optimum
+                                && isValidRoute(graph, result.getRoute(), matrix));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * 回调收到的路线总距离必须严格递减，第一条就是返回值，取消之后不再发布；预算充足时最后一条是最优解
+     */
+    private static void checkRouteWithin(Graph graph, List<City> cities, Random random) {
+        DijkstraAlgorithm dijkstra = new DijkstraAlgorithm(graph);
+        HeldKarpTour heldKarp = new HeldKarpTour();
+        RouteOptimizer optimizer = new RouteOptimizer(graph);
+        
+        for (int trial = 0; trial < 8; trial++) {
+            DistanceMatrix matrix = randomMatrix(dijkstra, cities, random, 4 + trial, trial % 3 == 0);
+            long optimum = cost(matrix, heldKarp.order(matrix));
+            boolean cancelEarly = trial % 2 == 1;
+            
+            List<RouteOptimizer.PlannedRoute> published = Collections.synchronizedList(new ArrayList<>());
+            TourBound cancellation = new TourBound();
+            RouteOptimizer.PlannedRoute first = optimizer.findRouteWithin(startOf(matrix), endOf(matrix),
+                    attractionsOf(matrix), Duration.ofMillis(cancelEarly ? 2000 : 500), cancellation, published::add);
+            if (cancelEarly) {
+                cancellation.cancel();
+            }
+            pause(cancelEarly ? 200 : 700);
+            int count = published.size();
+            pause(200);
+            
+            boolean decreasing = true;
+            for (int i = 1; i < count; i++) {
+                decreasing &= published.get(i).getRoute().getTotalDistance()
+                        < published.get(i - 1).getRoute().getTotalDistance();
+            }
+            RouteOptimizer.PlannedRoute last = published.get(count - 1);
+            check("routeWithin, " + describe(matrix) + (cancelEarly ? ", cancelled" : ""),
+                    published.get(0) == first && decreasing && published.size() == count
+                            && isValidRoute(graph, last.getRoute(), matrix)
+                            && (cancelEarly || last.getRoute().getTotalDistance() == optimum));
+        }
+    }
+    
+    /**
+     * 随机增删景点，每一步的路线都必须连贯、经过所有景点，且不短于最优解；
+     * 一个规划器由已有路线初始化，另一个由策略初始化
+     */
+    private static void checkIncrementalPlanner(Graph graph, List<City> cities, Random random, boolean roundTrip) {
+        DijkstraAlgorithm dijkstra = new DijkstraAlgorithm(graph);
+        HeldKarpTour heldKarp = new HeldKarpTour();
+        City start = cities.get(random.nextInt(cities.size()));
+        City end = roundTrip ? start : cities.get(random.nextInt(cities.size()));
+        
+        List<Attraction> attractions = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            attractions.add(new Attraction("Attraction " + i, cities.get(random.nextInt(cities.size()))));
+        }
+        TourBound cancellation = new TourBound();
+        RouteOptimizer.PlannedRoute seed = new RouteOptimizer(graph).findRouteWithin(start, end, attractions,
+                Duration.ofMillis(100), cancellation, route -> { });
+        cancellation.cancel();
+        
+        List<IncrementalRoutePlanner> planners = List.of(
+                new IncrementalRoutePlanner(graph, seed),
+                new IncrementalRoutePlanner(graph, start, end, attractions, heldKarp));
+        String kind = roundTrip ? "round trip" : "one way";
+        
+        int next = attractions.size();
+        for (int step = 0; step < 40; step++) {
+            if ((random.nextBoolean() && attractions.size() < 9) || attractions.size() < 2) {
+                Attraction added = new Attraction("Attraction " + next++, cities.get(random.nextInt(cities.size())));
+                attractions.add(added);
+                planners.forEach(planner -> planner.addAttraction(added));
+            } else {
+                Attraction removed = attractions.remove(random.nextInt(attractions.size()));
+                planners.forEach(planner -> planner.removeAttraction(removed));
+            }
+            
+            DistanceMatrix matrix = stopMatrix(dijkstra, start, end, attractions);
+            long optimum = cost(matrix, heldKarp.order(matrix));
+            for (IncrementalRoutePlanner planner : planners) {
+                RouteOptimizer.RouteResult route = planner.getRoute();
+                check("incremental " + kind + ", step " + step + ", " + attractions.size() + " attractions",
+                        isValidRoute(graph, route, matrix) && route.getTotalDistance() >= optimum
+                                && planner.getAttractions().size() == attractions.size());
+            }
+        }
+        System.out.println("incremental " + kind + " checked over 40 edits");
+    }
+    
+    /**
+     * 每种搜索模式先查询一次，使收缩层次和地标表等预处理结果建立起来，再加两条捷径，之后的查询和路线必须用上它们
+     */
+    private static void checkAddRoadAfterQuery() {
+        for (DijkstraAlgorithm.SearchMode mode : DijkstraAlgorithm.SearchMode.values()) {
+            Graph graph = new Graph();
+            City[] chain = new City[12];
+            for (int i = 0; i < chain.length; i++) {
+                chain[i] = new City("Chain " + i, "XX", 30.0, -100.0 + i);
+                graph.addCity(chain[i]);
+            }
+            for (int i = 1; i < chain.length; i++) {
+                graph.addRoad(new Road(chain[i - 1], chain[i], 100));
+            }
+            City first = chain[0];
+            City last = chain[chain.length - 1];
+            
+            DijkstraAlgorithm dijkstra = new DijkstraAlgorithm(graph, mode);
+            RouteOptimizer optimizer = new RouteOptimizer(graph, mode, new HeldKarpTour());
+            List<Attraction> attractions = List.of(new Attraction("Middle", chain[5]));
+            int before = dijkstra.findShortestPath(first, last).getDistance();
+            int routeBefore = optimizer.findOptimalRoute(first, first, attractions).getTotalDistance();
+            
+            // 捷径不短于大圆距离，A*的启发函数仍然可采纳
+            graph.addRoad(new Road(first, last, 700));
+            graph.addRoad(new Road(first, chain[5], 320));
+            int after = dijkstra.findShortestPath(first, last).getDistance();
+            int routeAfter = optimizer.findOptimalRoute(first, first, attractions).getTotalDistance();
+            check("add road after query, " + mode,
+                    before == 1100 && after == 700 && routeBefore == 1000 && routeAfter == 640);
+        }
+    }
+    
+    /**
+     * 生成连通的随机路网：城市随机分布在平面上，每个城市连向最近的几个城市，再连成一条链保证连通
+     */
+    private static Graph randomRoadNetwork(Random random) {
+        Graph graph = new Graph();
+        City[] cities = new City[CITY_COUNT];
+        double[] x = new double[CITY_COUNT];
+        double[] y = new double[CITY_COUNT];
+        for (int i = 0; i < CITY_COUNT; i++) {
+            x[i] = random.nextDouble() * 2000;
+            y[i] = random.nextDouble() * 2000;
+            cities[i] = new City("City " + i, "XX");
+            graph.addCity(cities[i]);
+        }
+        
+        for (int i = 0; i < CITY_COUNT; i++) {
+            Integer[] byDistance = new Integer[CITY_COUNT];
+            for (int j = 0; j < CITY_COUNT; j++) {
+                byDistance[j] = j;
+            }
+            final int from = i;
+            Arrays.sort(byDistance, (a, b) -> Double.compare(
+                    Math.hypot(x[from] - x[a], y[from] - y[a]), Math.hypot(x[from] - x[b], y[from] - y[b])));
+            for (int n = 1; n <= ROADS_PER_CITY; n++) {
+                addRoad(graph, cities, x, y, i, byDistance[n]);
+            }
+            if (i > 0) {
+                addRoad(graph, cities, x, y, i - 1, i);
+            }
+        }
+        return graph;
+    }
+    
+    private static void addRoad(Graph graph, City[] cities, double[] x, double[] y, int a, int b) {
+        if (graph.getRoadBetween(cities[a], cities[b]) == null) {
+            int length = 1 + (int) Math.round(Math.hypot(x[a] - x[b], y[a] - y[b]));
+            graph.addRoad(new Road(cities[a], cities[b], length));
+        }
+    }
+    
+    /**
+     * 随机选取起点、终点和k个互不相同的景点城市，求出它们的距离矩阵
+     */
+    private static DistanceMatrix randomMatrix(DijkstraAlgorithm dijkstra, List<City> cities, Random random,
+                                               int k, boolean roundTrip) {
+        List<City> shuffled = new ArrayList<>(cities);
+        Collections.shuffle(shuffled, random);
+        City start = shuffled.get(0);
+        City end = roundTrip ? start : shuffled.get(1);
+        List<Attraction> attractions = new ArrayList<>();
+        for (City city : shuffled.subList(2, 2 + k)) {
+            attractions.add(new Attraction("Attraction in " + city.getName(), city));
+        }
+        return stopMatrix(dijkstra, start, end, attractions);
+    }
+    
+    /**
+     * 按TourStrategy的格式求距离矩阵：行为 [起点, 景点城市]，列为 [景点城市, 终点]，同一城市只出现一次
+     */
+    private static DistanceMatrix stopMatrix(DijkstraAlgorithm dijkstra, City start, City end,
+                                             List<Attraction> attractions) {
+        List<City> stops = new ArrayList<>();
+        for (Attraction attraction : attractions) {
+            if (!stops.contains(attraction.getLocation())) {
+                stops.add(attraction.getLocation());
+            }
+        }
+        List<City> sources = new ArrayList<>();
+        sources.add(start);
+        sources.addAll(stops);
+        List<City> targets = new ArrayList<>(stops);
+        targets.add(end);
+        return dijkstra.distanceMatrix(sources, targets);
+    }
+    
+    private static City startOf(DistanceMatrix matrix) {
+        return matrix.getSources().get(0);
+    }
+    
+    private static City endOf(DistanceMatrix matrix) {
+        return matrix.getTargets().get(matrix.getTargets().size() - 1);
+    }
+    
+    private static List<Attraction> attractionsOf(DistanceMatrix matrix) {
+        List<Attraction> attractions = new ArrayList<>();
+        List<City> targets = matrix.getTargets();
+        for (City city : targets.subList(0, targets.size() - 1)) {
+            attractions.add(new Attraction("Attraction in " + city.getName(), city));
+        }
+        return attractions;
+    }
+    
+    private static String describe(DistanceMatrix matrix) {
+        int k = matrix.getTargets().size() - 1;
+        return k + " stops" + (startOf(matrix).equals(endOf(matrix)) ? ", round trip" : "");
+    }
+    
+    /**
+     * 计算访问顺序的总距离
+     * @return 总距离，顺序不是0..k-1的排列或有不可达的一段时返回-1
+     */
+    private static long cost(DistanceMatrix matrix, int[] order) {
+        int k = matrix.getTargets().size() - 1;
+        if (order == null || order.length != k) {
+            return -1;
+        }
+        boolean[] seen = new boolean[k];
+        long total = 0;
+        int row = 0;
+        for (int stop : order) {
+            if (stop < 0 || stop >= k || seen[stop] || !matrix.isReachable(row, stop)) {
+                return -1;
+            }
+            seen[stop] = true;
+            total += matrix.getDistance(row, stop);
+            row = stop + 1;
+        }
+        return matrix.isReachable(row, k) ? total + matrix.getDistance(row, k) : -1;
+    }
+    
+    /**
+     * 穷举所有访问顺序求最短总距离
+     */
+    private static long bruteForce(DistanceMatrix matrix) {
+        int k = matrix.getTargets().size() - 1;
+        int[] order = new int[k];
+        for (int i = 0; i < k; i++) {
+            order[i] = i;
+        }
+        return permute(matrix, order, 0);
+    }
+    
+    private static long permute(DistanceMatrix matrix, int[] order, int position) {
+        if (position == order.length) {
+            long total = cost(matrix, order);
+            return total < 0 ? Long.MAX_VALUE : total;
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = position; i < order.length; i++) {
+            swap(order, position, i);
+            best = Math.min(best, permute(matrix, order, position + 1));
+            swap(order, position, i);
+        }
+        return best;
+    }
+    
+    private static void swap(int[] order, int i, int j) {
+        int t = order[i];
+        order[i] = order[j];
+        order[j] = t;
+    }
+    
+    /**
+     * 路线必须从起点到终点、相邻城市之间有路、各段之和等于总距离，并经过矩阵中的每个景点城市
+     */
+    private static boolean isValidRoute(Graph graph, RouteOptimizer.RouteResult route, DistanceMatrix matrix) {
+        List<City> path = route.getPath();
+        if (path.isEmpty() || !path.get(0).equals(startOf(matrix)) || !path.get(path.size() - 1).equals(endOf(matrix))) {
+            return false;
+        }
+        long total = 0;
+        for (int i = 1; i < path.size(); i++) {
+            if (path.get(i - 1).equals(path.get(i))) {
+                continue;
+            }
+            Road road = graph.getRoadBetween(path.get(i - 1), path.get(i));
+            if (road == null) {
+                return false;
+            }
+            total += road.getDistance();
+        }
+        List<City> targets = matrix.getTargets();
+        return total == route.getTotalDistance() && path.containsAll(targets.subList(0, targets.size() - 1));
+    }
+    
+    private static void check(String name, boolean passed) {
+        checks++;
+        if (!passed) {
+            failures++;
+            System.out.println("FAIL: " + name);
+        }
+    }
+    
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
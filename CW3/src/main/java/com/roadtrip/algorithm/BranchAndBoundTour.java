@@ -0,0 +1,528 @@
+package com.roadtrip.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分支定界法精确求解景点访问顺序，用于Held-Karp的dp表放不下的中等规模（约20到40个景点）
+ * 
+ * 搜索树的每个节点是一条从起点出发的部分路线。剩余部分（当前城市经过所有未访问景点到终点）
+ * 是一条哈密顿路径，也是一棵生成树，因此剩余城市的最小生成树长度是它的下界。
+ * 下界再用Held-Karp的拉格朗日松弛加强：每个城市带一个惩罚值π，边权变为c(i, j) + π(i) + π(j)，
+ * 路径端点的度数为1、其余城市为2，对任意π，MST长度减去 Σ 度数 * π 都不超过剩余路径长度。
+ * π在根节点用次梯度法优化一次，之后所有节点沿用。
+ * 
+ * 初始上界由最近邻顺序经局部搜索（2-opt、Or-opt）改进后给出。子节点按下界从小到大展开，前几层的子树作为独立任务
+ * 在ForkJoin公共线程池中并行搜索，当前最优解（上界）由所有任务共享。
+ * 超出时间预算时停止搜索，返回当前最优解以及与下界之间的差距。
+ * 与其他策略并行求解时，上界还与它们通过TourBound共享
+ */
+public class BranchAndBoundTour implements TourStrategy {
+    /** 默认的时间预算（毫秒） */
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 10_000;
+    
+    /** 景点数上限，景点集合用long位图表示 */
+    public static final int MAX_STOPS = 62;
+    
+    private static final int UNREACHABLE = DistanceMatrix.UNREACHABLE;
+    private static final int ROOT_ITERATIONS = 300; // 根节点的次梯度迭代次数
+    private static final int STALL_ITERATIONS = 20; // 下界连续这么多次没有提高时步长减半
+    private static final int SPLIT_DEPTH = 2; // 这一深度以上的子树作为独立任务
+    private static final double EPSILON = 1e-6;
+    
+    private final long timeBudgetMillis;
+    private final TourStrategy fallback;
+    
+    /**
+     * 构造函数，使用默认时间预算，景点数超过上限时退化为贪心算法
+     */
+    public BranchAndBoundTour() {
+        this(DEFAULT_TIME_BUDGET_MILLIS, new NearestNeighborTour());
+    }
+    
+    /**
+     * 构造函数
+     * @param timeBudgetMillis 搜索的时间预算（毫秒），超出后返回当前最优解
+     * @param fallback 景点数超过上限时使用的策略
+     */
+    public BranchAndBoundTour(long timeBudgetMillis, TourStrategy fallback) {
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.fallback = fallback;
+    }
+    
+    @Override
+    public int[] order(DistanceMatrix matrix) {
+        return order(matrix, new TourBound());
+    }
+    
+    @Override
+    public int[] order(DistanceMatrix matrix, TourBound bound) {
+        if (matrix.getTargets().size() - 1 > MAX_STOPS) {
+            return fallback.order(matrix, bound);
+        }
+        return solve(matrix, bound).getOrder();
+    }
+    
+    /**
+     * 求解景点访问顺序，并给出下界
+     * @param matrix 距离矩阵，格式见TourStrategy
+     * @return 求解结果
+     * @throws IllegalArgumentException 如果景点数超过MAX_STOPS
+     */
+    public Result solve(DistanceMatrix matrix) {
+        return solve(matrix, new TourBound());
+    }
+    
+    /**
+     * 与其他策略并行求解：用共享上界剪枝，找到的路线和证明的下界都报告给bound，bound被取消时按超时处理。
+     * 共享上界比自己的解更短时，搜索完成证明的是那条路线最优，返回结果中的下界为共享上界
+     * @param matrix 距离矩阵，格式见TourStrategy
+     * @param bound 共享的界
+     * @return 求解结果
+     * @throws IllegalArgumentException 如果景点数超过MAX_STOPS
+     */
+    public Result solve(DistanceMatrix matrix, TourBound bound) {
+        int k = matrix.getTargets().size() - 1;
+        if (k > MAX_STOPS) {
+            throw new IllegalArgumentException("景点数超过分支定界的上限: " + k);
+        }
+        
+        Search search = new Search(matrix, k, System.nanoTime() + timeBudgetMillis * 1_000_000L, bound);
+        Result result = search.run(new LocalSearchTour(new NearestNeighborTour()).order(matrix));
+        bound.offerLowerBound(result.getLowerBound());
+        return result;
+    }
+    
+    /**
+     * 一次求解的共享状态，搜索树中的所有任务共用
+     * 城市编号：0为起点，1..k为景点（景点j为j + 1），k + 1为终点
+     */
+    private static final class Search {
+        private final int k;
+        private final int n;
+        private final int end;
+        private final int[] cost; // 有向距离 cost[a * n + b]，不可达为UNREACHABLE
+        private final double[] symmetric; // 下界使用的对称距离，取两个方向的较小值
+        private final double[] penalty; // 拉格朗日惩罚值π
+        private final long deadline;
+        private final TourBound shared; // 与其他策略共享的界
+        
+        private final AtomicInteger incumbent = new AtomicInteger(UNREACHABLE); // 当前最优解的长度
+        private volatile int[] incumbentPath; // 当前最优解的城市编号序列（不含起点和终点）
+        private final AtomicInteger openBound = new AtomicInteger(UNREACHABLE); // 因超时放弃的子树的最小下界
+        private volatile boolean timedOut;
+        
+        Search(DistanceMatrix matrix, int k, long deadline, TourBound bound) {
+            this.k = k;
+            this.n = k + 2;
+            this.end = k + 1;
+            this.deadline = deadline;
+            this.shared = bound;
+            
+            cost = new int[n * n];
+            Arrays.fill(cost, UNREACHABLE);
+            for (int a = 0; a <= k; a++) {
+                for (int b = 1; b <= end; b++) {
+                    if (a != b) {
+                        cost[a * n + b] = matrix.getDistance(a, b - 1);
+                    }
+                }
+            }
+            
+            symmetric = new double[n * n];
+            for (int a = 0; a < n; a++) {
+                for (int b = 0; b < n; b++) {
+                    int distance = Math.min(cost[a * n + b], cost[b * n + a]);
+                    symmetric[a * n + b] = distance == UNREACHABLE ? Double.POSITIVE_INFINITY : distance;
+                }
+            }
+            penalty = new double[n];
+        }
+        
+        /**
+         * 执行搜索
+         * @param seed 初始解（景点顺序），没有时为null
+         * @return 求解结果
+         */
+        Result run(int[] seed) {
+            if (seed != null) {
+                int[] path = new int[k];
+                for (int i = 0; i < k; i++) {
+                    path[i] = seed[i] + 1;
+                }
+                offer(pathCost(path), path);
+            }
+            
+            long allStops = ((1L << k) - 1) << 1; // 景点城市编号为1..k
+            int rootBound = optimizePenalties(allStops);
+            if (rootBound < upper()) {
+                ForkJoinPool.commonPool().invoke(new Subtree(0, allStops, 0, new int[k], 0, rootBound));
+            }
+            
+            int best = incumbent.get();
+            int[] path = incumbentPath;
+            if (path == null) {
+                return new Result(null, UNREACHABLE, rootBound);
+            }
+            
+            int[] order = new int[k];
+            for (int i = 0; i < k; i++) {
+                order[i] = path[i] - 1;
+            }
+            
+            // 搜索完成时上界即为最优长度；超时时下界取被放弃子树下界的最小值
+            int upper = upper();
+            int lowerBound = timedOut ? Math.max(rootBound, Math.min(openBound.get(), upper)) : upper;
+            return new Result(order, best, lowerBound);
+        }
+        
+        /**
+         * 在根节点用次梯度法优化惩罚值π，使下界尽量大
+         * @param allStops 全部景点的集合
+         * @return 根节点的下界
+         */
+        private int optimizePenalties(long allStops) {
+            Bounder bounder = new Bounder();
+            double best = Double.NEGATIVE_INFINITY;
+            double[] bestPenalty = penalty.clone();
+            double lambda = 2.0;
+            int stall = 0;
+            
+            for (int iteration = 0; iteration < ROOT_ITERATIONS; iteration++) {
+                double bound = bounder.bound(0, allStops);
+                if (bound == Double.POSITIVE_INFINITY) {
+                    return UNREACHABLE;
+                }
+                if (bound > best + EPSILON) {
+                    best = bound;
+                    System.arraycopy(penalty, 0, bestPenalty, 0, n);
+                    stall = 0;
+                } else if (++stall >= STALL_ITERATIONS) {
+                    lambda /= 2;
+                    stall = 0;
+                }
+                
+                // 度数都符合要求时生成树本身就是一条路径，下界已经等于其长度
+                int norm = 0;
+                for (int i = 0; i < bounder.size; i++) {
+                    int excess = bounder.degree[i] - bounder.targetDegree(i);
+                    norm += excess * excess;
+                }
+                if (norm == 0) {
+                    break;
+                }
+                
+                int upper = upper();
+                double gap = upper == UNREACHABLE ? Math.abs(bound) * 0.1 + 1 : Math.max(upper - bound, 1);
+                double step = lambda * gap / norm;
+                for (int i = 0; i < bounder.size; i++) {
+                    penalty[bounder.vertex[i]] += step * (bounder.degree[i] - bounder.targetDegree(i));
+                }
+            }
+            
+            System.arraycopy(bestPenalty, 0, penalty, 0, n);
+            return ceiling(best);
+        }
+        
+        /**
+         * 尝试用新的完整路线更新当前最优解
+         * @param total 路线长度
+         * @param path 景点城市编号序列
+         */
+        private void offer(int total, int[] path) {
+            synchronized (this) {
+                if (total < incumbent.get()) {
+                    incumbentPath = path.clone();
+                    incumbent.set(total);
+                }
+            }
+            shared.offerUpperBound(total);
+        }
+        
+        /**
+         * 剪枝使用的上界：自己的当前最优解和共享上界中较小的一个
+         */
+        private int upper() {
+            return Math.min(incumbent.get(), shared.getUpperBound());
+        }
+        
+        /**
+         * 计算完整路线的长度
+         * @param path 景点城市编号序列
+         * @return 路线长度，不可行时为UNREACHABLE
+         */
+        private int pathCost(int[] path) {
+            int total = 0;
+            int last = 0;
+            for (int city : path) {
+                total = add(total, cost[last * n + city]);
+                last = city;
+            }
+            return add(total, cost[last * n + end]);
+        }
+        
+        /**
+         * 检查是否超时，超时时记录被放弃子树的下界
+         * @param bound 被放弃子树的下界
+         * @return 是否超时
+         */
+        private boolean expired(int bound) {
+            if (!timedOut && !shared.isCancelled() && System.nanoTime() - deadline < 0) {
+                return false;
+            }
+            timedOut = true;
+            openBound.accumulateAndGet(bound, Math::min);
+            return true;
+        }
+        
+        /**
+         * 前SPLIT_DEPTH层的搜索节点，每个子节点作为一个独立任务
+         * 任务只在ForkJoin线程池中运行，不会被序列化
+         */
+        @SuppressWarnings("serial")
+        private final class Subtree extends RecursiveAction {
+            private final int last;
+            private final long remaining;
+            private final int distance;
+            private final int[] path;
+            private final int depth;
+            private final int bound;
+            
+            Subtree(int last, long remaining, int distance, int[] path, int depth, int bound) {
+                this.last = last;
+                this.remaining = remaining;
+                this.distance = distance;
+                this.path = path;
+                this.depth = depth;
+                this.bound = bound;
+            }
+            
+            @Override
+            protected void compute() {
+                if (bound >= upper() || expired(bound)) {
+                    return;
+                }
+                
+                Bounder bounder = new Bounder();
+                if (depth >= SPLIT_DEPTH || remaining == 0) {
+                    bounder.search(last, remaining, distance, path, depth);
+                    return;
+                }
+                
+                List<Subtree> children = new ArrayList<>();
+                int[][] expanded = bounder.children(last, remaining, distance);
+                for (int[] child : expanded) {
+                    int[] childPath = path.clone();
+                    childPath[depth] = child[0];
+                    children.add(new Subtree(child[0], remaining & ~(1L << child[0]), child[1],
+                            childPath, depth + 1, child[2]));
+                }
+                invokeAll(children);
+            }
+        }
+        
+        /**
+         * 计算下界和深度优先搜索，每个任务一个实例，内部的临时数组不共享
+         */
+        private final class Bounder {
+            private final int[] vertex = new int[n]; // 当前生成树的城市，0号为路径当前端点，最后一个为终点
+            private final int[] degree = new int[n];
+            private final double[] key = new double[n];
+            private final int[] parent = new int[n];
+            private final boolean[] inTree = new boolean[n];
+            private int size;
+            
+            /**
+             * 剩余路径的拉格朗日下界：当前城市、未访问景点和终点上的最小生成树
+             * @param last 当前城市
+             * @param remaining 未访问景点的集合
+             * @return 下界，剩余城市不连通时为正无穷
+             */
+            double bound(int last, long remaining) {
+                size = 0;
+                vertex[size++] = last;
+                for (long bits = remaining; bits != 0; bits &= bits - 1) {
+                    vertex[size++] = Long.numberOfTrailingZeros(bits);
+                }
+                vertex[size++] = end;
+                
+                // Prim算法，边权加上两端的惩罚值
+                for (int i = 0; i < size; i++) {
+                    degree[i] = 0;
+                    inTree[i] = false;
+                    key[i] = weight(vertex[0], vertex[i]);
+                    parent[i] = 0;
+                }
+                inTree[0] = true;
+                double total = 0;
+                for (int step = 1; step < size; step++) {
+                    int next = -1;
+                    for (int i = 1; i < size; i++) {
+                        if (!inTree[i] && (next < 0 || key[i] < key[next])) {
+                            next = i;
+                        }
+                    }
+                    if (key[next] == Double.POSITIVE_INFINITY) {
+                        return Double.POSITIVE_INFINITY;
+                    }
+                    
+                    total += key[next];
+                    inTree[next] = true;
+                    degree[next]++;
+                    degree[parent[next]]++;
+                    for (int i = 1; i < size; i++) {
+                        if (!inTree[i]) {
+                            double w = weight(vertex[next], vertex[i]);
+                            if (w < key[i]) {
+                                key[i] = w;
+                                parent[i] = next;
+                            }
+                        }
+                    }
+                }
+                
+                for (int i = 0; i < size; i++) {
+                    total -= targetDegree(i) * penalty[vertex[i]];
+                }
+                return total;
+            }
+            
+            /**
+             * 路径端点的目标度数为1，其余城市为2
+             */
+            int targetDegree(int i) {
+                return i == 0 || i == size - 1 ? 1 : 2;
+            }
+            
+            private double weight(int a, int b) {
+                return symmetric[a * n + b] + penalty[a] + penalty[b];
+            }
+            
+            /**
+             * 展开一个节点：计算每个可行子节点的下界，按下界从小到大排列
+             * @param last 当前城市
+             * @param remaining 未访问景点的集合
+             * @param distance 已走过的距离
+             * @return 子节点数组，每项为 {城市, 已走距离, 下界}，只包含下界小于当前最优解的子节点
+             */
+            int[][] children(int last, long remaining, int distance) {
+                int[][] children = new int[Long.bitCount(remaining)][];
+                int count = 0;
+                for (long bits = remaining; bits != 0; bits &= bits - 1) {
+                    int city = Long.numberOfTrailingZeros(bits);
+                    int childDistance = add(distance, cost[last * n + city]);
+                    if (childDistance >= upper()) {
+                        continue;
+                    }
+                    
+                    int childBound = add(childDistance, ceiling(bound(city, remaining & ~(1L << city))));
+                    if (childBound < upper()) {
+                        children[count++] = new int[] {city, childDistance, childBound};
+                    }
+                }
+                
+                children = Arrays.copyOf(children, count);
+                Arrays.sort(children, (a, b) -> Integer.compare(a[2], b[2]));
+                return children;
+            }
+            
+            /**
+             * 从给定节点开始深度优先搜索
+             * @param last 当前城市
+             * @param remaining 未访问景点的集合
+             * @param distance 已走过的距离
+             * @param path 已访问景点序列，前depth项有效
+             * @param depth 已访问景点数
+             */
+            void search(int last, long remaining, int distance, int[] path, int depth) {
+                if (remaining == 0) {
+                    offer(add(distance, cost[last * n + end]), path);
+                    return;
+                }
+                
+                for (int[] child : children(last, remaining, distance)) {
+                    // 子节点按下界排序，一个被剪掉后其余的也都会被剪掉
+                    if (child[2] >= upper()) {
+                        return;
+                    }
+                    if (expired(child[2])) {
+                        return;
+                    }
+                    path[depth] = child[0];
+                    search(child[0], remaining & ~(1L << child[0]), child[1], path, depth + 1);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 两个距离相加，任一个不可达时结果也不可达
+     */
+    private static int add(int a, int b) {
+        return a == UNREACHABLE || b == UNREACHABLE ? UNREACHABLE : (int) Math.min(UNREACHABLE, (long) a + b);
+    }
+    
+    /**
+     * 将实数下界向上取整为整数下界
+     */
+    private static int ceiling(double bound) {
+        if (bound >= UNREACHABLE) {
+            return UNREACHABLE;
+        }
+        return (int) Math.max(0, Math.ceil(bound - EPSILON));
+    }
+    
+    /**
+     * 分支定界的求解结果
+     */
+    public static class Result {
+        private final int[] order;
+        private final int cost;
+        private final int lowerBound;
+        
+        public Result(int[] order, int cost, int lowerBound) {
+            this.order = order;
+            this.cost = cost;
+            this.lowerBound = lowerBound;
+        }
+        
+        /**
+         * 获取景点访问顺序
+         * @return 景点编号序列，不存在可行路线时为null
+         */
+        public int[] getOrder() {
+            return order == null ? null : order.clone();
+        }
+        
+        public int getCost() {
+            return cost;
+        }
+        
+        public int getLowerBound() {
+            return lowerBound;
+        }
+        
+        /**
+         * 是否已证明最优（搜索在时间预算内完成）
+         * @return 当前解是否最优
+         */
+        public boolean isOptimal() {
+            return order != null && lowerBound >= cost;
+        }
+        
+        /**
+         * 获取最优性差距：(解的长度 - 下界) / 解的长度
+         * @return 差距，已证明最优时为0
+         */
+        public double getGap() {
+            if (order == null || cost == 0) {
+                return 0;
+            }
+            return Math.max(0, cost - lowerBound) / (double) cost;
+        }
+    }
+}
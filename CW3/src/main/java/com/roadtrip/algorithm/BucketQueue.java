@@ -0,0 +1,146 @@
+package com.roadtrip.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * 单调桶队列（Dial算法）
+ * 道路长度是较小的正整数，因此可以按键值把城市放入循环桶数组，
+ * 弹出时只需向前扫描到第一个非空桶，入队和降低键值都是O(1)。
+ * 要求队列单调：插入的键不小于最近弹出的键，且不超过它加上桶数量减一
+ */
+final class BucketQueue implements NodeQueue {
+    private static final int NONE = -1;
+    
+    private final int[] heads;       // 桶 -> 桶内第一个城市
+    private final int[] next;        // 城市 -> 同一桶内的下一个城市
+    private final int[] previous;    // 城市 -> 同一桶内的上一个城市
+    private final int[] keys;        // 城市 -> 键
+    private final boolean[] queued;  // 城市是否在队列中
+    private final int mask;
+    private int cursor;              // 当前扫描到的键，不大于队列中的最小键
+    private boolean started;         // 是否已插入过城市，首次插入时以其键作为扫描起点
+    private int size;
+    
+    /**
+     * 构造函数
+     * @param capacity 城市编号上限（不含）
+     * @param keySpan 队列中最大键与最小键之差的上限
+     */
+    BucketQueue(int capacity, int keySpan) {
+        int bucketCount = bucketCountFor(keySpan);
+        heads = new int[bucketCount];
+        Arrays.fill(heads, NONE);
+        mask = bucketCount - 1;
+        next = new int[capacity];
+        previous = new int[capacity];
+        keys = new int[capacity];
+        queued = new boolean[capacity];
+    }
+    
+    /**
+     * 计算覆盖给定键跨度所需的桶数量（2的幂，便于取模）
+     * @param keySpan 最大键与最小键之差的上限
+     * @return 桶数量
+     */
+    static int bucketCountFor(int keySpan) {
+        return Integer.highestOneBit(Math.max(1, keySpan)) << 1;
+    }
+    
+    int capacity() {
+        return queued.length;
+    }
+    
+    int bucketCount() {
+        return heads.length;
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    @Override
+    public void insertOrDecrease(int node, int key) {
+        if (queued[node]) {
+            if (key >= keys[node]) {
+                return;
+            }
+            unlink(node);
+        } else {
+            if (!started) {
+                cursor = key;
+                started = true;
+            }
+            queued[node] = true;
+            size++;
+        }
+        if (key < cursor || key - cursor > mask) {
+            throw new IllegalStateException("键 " + key + " 超出桶队列范围 [" + cursor + ", " + (cursor + mask) + "]");
+        }
+        
+        keys[node] = key;
+        int bucket = key & mask;
+        int head = heads[bucket];
+        next[node] = head;
+        previous[node] = NONE;
+        if (head != NONE) {
+            previous[head] = node;
+        }
+        heads[bucket] = node;
+    }
+    
+    @Override
+    public int peekKey() {
+        advance();
+        return cursor;
+    }
+    
+    @Override
+    public int poll() {
+        advance();
+        int node = heads[cursor & mask];
+        unlink(node);
+        queued[node] = false;
+        size--;
+        return node;
+    }
+    
+    /**
+     * 清空队列，以便复用于下一次搜索
+     * 队列中的键都在 [cursor, cursor + 桶数量) 内，从cursor开始扫描到取完所有城市即可
+     */
+    void clear() {
+        for (int remaining = size; remaining > 0; cursor++) {
+            int bucket = cursor & mask;
+            for (int node = heads[bucket]; node != NONE; node = next[node]) {
+                queued[node] = false;
+                remaining--;
+            }
+            heads[bucket] = NONE;
+        }
+        size = 0;
+        started = false;
+    }
+    
+    /**
+     * 将扫描位置移动到第一个非空桶
+     */
+    private void advance() {
+        while (heads[cursor & mask] == NONE) {
+            cursor++;
+        }
+    }
+    
+    private void unlink(int node) {
+        int before = previous[node];
+        int after = next[node];
+        if (before != NONE) {
+            next[before] = after;
+        } else {
+            heads[keys[node] & mask] = after;
+        }
+        if (after != NONE) {
+            previous[after] = before;
+        }
+    }
+}
@@ -0,0 +1,553 @@
+package com.roadtrip.algorithm;
+
+import com.roadtrip.model.City;
+import com.roadtrip.model.CompactGraph;
+import com.roadtrip.model.Graph;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 收缩层次（Contraction Hierarchies）最短路径预处理与查询
+ * 预处理阶段按"边差"依次收缩城市，并用见证搜索判断是否需要添加捷径；
+ * 查询阶段从起点和终点分别只沿"向上"（指向更高层级城市）的边做双向搜索，
+ * 最后把捷径递归展开为原始道路上的城市序列。
+ * 预处理结果可以序列化保存，重启后无需重新收缩。
+ */
+public class ContractionHierarchy implements Serializable {
+    private static final long serialVersionUID = 2L;
+    
+    // 见证搜索最多确定的城市数量，超过后视为找不到见证路径（只会多加捷径，不影响正确性）
+    private static final int WITNESS_SETTLE_LIMIT = 100;
+    // 原始道路的中间城市标记
+    private static final int NO_MIDDLE = -1;
+    
+    private final String[] cityNames;   // 城市编号 -> 城市全名，用于加载时校验
+    private final long roadFingerprint; // 构建时道路数据（CSR）的指纹，用于判断道路是否变化
+    private final int[] ranks;          // 城市编号 -> 收缩顺序（层级）
+    private final int[] upOffsets;      // 向上图（CSR）：每个城市向上边区间的起点
+    private final int[] upTargets;      // 向上边指向的城市编号
+    private final int[] upWeights;      // 向上边长度
+    private final int[] upMiddles;      // 捷径的中间城市编号，原始道路为-1
+    
+    // 构建或加载时绑定的图快照
+    private transient CompactGraph compact;
+    
+    private ContractionHierarchy(CompactGraph compact, int[] ranks,
+                                 int[] upOffsets, int[] upTargets, int[] upWeights, int[] upMiddles) {
+        this.compact = compact;
+        this.ranks = ranks;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+        this.cityNames = new String[compact.getCityCount()];
+        for (int u = 0; u < cityNames.length; u++) {
+            cityNames[u] = compact.getCity(u).getFullName();
+        }
+        this.roadFingerprint = fingerprint(compact);
+    }
+    
+    /**
+     * 对图的紧凑快照进行收缩预处理
+     * @param compact 图的紧凑快照
+     * @return 收缩层次
+     */
+    public static ContractionHierarchy build(CompactGraph compact) {
+        return new Contractor(compact).contract();
+    }
+    
+    /**
+     * 将收缩层次保存到文件
+     * @param file 文件路径
+     * @throws IOException 如果文件写入失败
+     */
+    public void save(Path file) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeObject(this);
+        }
+    }
+    
+    /**
+     * 从文件加载收缩层次并绑定到路网图
+     * @param file 文件路径
+     * @param graph 城市路网图，城市编号和道路必须与保存时一致
+     * @return 收缩层次
+     * @throws IOException 如果文件读取失败或与路网图不匹配
+     */
+    public static ContractionHierarchy load(Path file, Graph graph) throws IOException {
+        ContractionHierarchy hierarchy;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            hierarchy = (ContractionHierarchy) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Invalid contraction hierarchy file: " + file, e);
+        }
+        
+        CompactGraph compact = graph.freeze();
+        if (!hierarchy.matches(compact)) {
+            throw new IOException("Contraction hierarchy does not match the road graph: " + file);
+        }
+        hierarchy.compact = compact;
+        return hierarchy;
+    }
+    
+    /**
+     * 判断收缩层次是否对应给定的图快照（城市数量、编号和道路都一致）
+     * @param snapshot 图的紧凑快照
+     * @return 如果对应则返回true
+     */
+    public boolean matches(CompactGraph snapshot) {
+        if (snapshot == compact) {
+            return true;
+        }
+        if (snapshot.getCityCount() != cityNames.length) {
+            return false;
+        }
+        for (int u = 0; u < cityNames.length; u++) {
+            if (!cityNames[u].equals(snapshot.getCity(u).getFullName())) {
+                return false;
+            }
+        }
+        return fingerprint(snapshot) == roadFingerprint;
+    }
+    
+    /**
+     * 计算快照中道路数据的指纹：依次混入每个城市的度数以及每条边的目标和长度（FNV-1a）
+     * @param snapshot 图的紧凑快照
+     * @return 指纹
+     */
+    private static long fingerprint(CompactGraph snapshot) {
+        long hash = 0xcbf29ce484222325L;
+        for (int u = 0; u < snapshot.getCityCount(); u++) {
+            hash = (hash ^ snapshot.degree(u)) * 0x100000001b3L;
+            for (int e = snapshot.firstEdge(u); e < snapshot.endEdge(u); e++) {
+                hash = (hash ^ snapshot.target(e)) * 0x100000001b3L;
+                hash = (hash ^ snapshot.weight(e)) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+    
+    /**
+     * 获取预处理后新增的捷径数量
+     * @return 捷径数量
+     */
+    public int getShortcutCount() {
+        int count = 0;
+        for (int middle : upMiddles) {
+            if (middle != NO_MIDDLE) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * 计算从起点到终点的最短路径
+     * @param start 起点城市
+     * @param end 终点城市
+     * @return 最短路径结果，如果城市不存在或不可达返回null
+     */
+    public DijkstraAlgorithm.ShortestPathResult findShortestPath(City start, City end) {
+        int source = compact.getId(start);
+        int target = compact.getId(end);
+        if (source < 0 || target < 0) {
+            return null;
+        }
+        return query(source, target);
+    }
+    
+    /**
+     * 向上双向搜索
+     * 两侧都只沿向上边扩展，某一侧的队首距离不小于已知最短长度时该侧停止
+     * @param source 起点城市编号
+     * @param target 终点城市编号
+     * @return 最短路径结果
+     */
+    DijkstraAlgorithm.ShortestPathResult query(int source, int target) {
+        SearchWorkspace workspace = SearchWorkspace.acquire(ranks.length);
+        SearchWorkspace.Labels forwardLabels = workspace.forward;
+        SearchWorkspace.Labels backwardLabels = workspace.backward;
+        
+        NodeQueue forwardQueue = forwardLabels.heap();
+        NodeQueue backwardQueue = backwardLabels.heap();
+        forwardLabels.set(source, 0, -1);
+        backwardLabels.set(target, 0, -1);
+        forwardQueue.insertOrDecrease(source, 0);
+        backwardQueue.insertOrDecrease(target, 0);
+        
+        int best = Integer.MAX_VALUE;
+        int meeting = -1;
+        int settled = 0;
+        
+        while (true) {
+            boolean forwardActive = !forwardQueue.isEmpty() && forwardQueue.peekKey() < best;
+            boolean backwardActive = !backwardQueue.isEmpty() && backwardQueue.peekKey() < best;
+            if (!forwardActive && !backwardActive) {
+                break;
+            }
+            
+            // 扩展队首距离较小的一侧
+            boolean forward = forwardActive
+                    && (!backwardActive || forwardQueue.peekKey() <= backwardQueue.peekKey());
+            NodeQueue queue = forward ? forwardQueue : backwardQueue;
+            SearchWorkspace.Labels labels = forward ? forwardLabels : backwardLabels;
+            SearchWorkspace.Labels otherLabels = forward ? backwardLabels : forwardLabels;
+            
+            int u = queue.poll();
+            int currentDistance = labels.distance(u);
+            settled++;
+            
+            // 两侧都到达的城市是候选的相遇点
+            int otherDistance = otherLabels.distance(u);
+            if (otherDistance != SearchWorkspace.UNREACHED && currentDistance + otherDistance < best) {
+                best = currentDistance + otherDistance;
+                meeting = u;
+            }
+            
+            for (int e = upOffsets[u], last = upOffsets[u + 1]; e < last; e++) {
+                int v = upTargets[e];
+                int newDistance = currentDistance + upWeights[e];
+                if (newDistance < labels.distance(v)) {
+                    labels.set(v, newDistance, u, e);
+                    queue.insertOrDecrease(v, newDistance);
+                }
+            }
+        }
+        
+        if (meeting < 0) {
+            return null;
+        }
+        
+        // 起点一侧：从相遇点回溯到起点逐段展开（边是无向的，可以反向展开），再整体反转为 起点 -> 相遇点
+        SearchWorkspace.IntList ids = workspace.path;
+        ids.add(meeting);
+        for (int current = meeting; current != source; current = forwardLabels.predecessor(current)) {
+            unpack(forwardLabels.edge(current), current, forwardLabels.predecessor(current), ids, workspace.stack);
+        }
+        ids.reverse();
+        
+        // 终点一侧：沿反向前驱从相遇点走到终点
+        for (int current = meeting; current != target; current = backwardLabels.predecessor(current)) {
+            unpack(backwardLabels.edge(current), current, backwardLabels.predecessor(current), ids, workspace.stack);
+        }
+        
+        List<City> path = DijkstraAlgorithm.toPath(compact, ids.toArray());
+        return new DijkstraAlgorithm.ShortestPathResult(path, best, settled);
+    }
+    
+    /**
+     * 将一条（可能是捷径的）边展开为原始道路上的城市序列，
+     * 按 from -> to 的方向追加到输出中（不含from本身）
+     * @param edge 向上边下标
+     * @param from 起始城市编号
+     * @param to 结束城市编号
+     * @param out 输出的城市编号序列
+     * @param stack 展开使用的显式栈，每项为连续的 {边下标, 起始城市, 结束城市}
+     */
+    private void unpack(int edge, int from, int to, SearchWorkspace.IntList out, SearchWorkspace.IntList stack) {
+        stack.clear();
+        push(stack, edge, from, to);
+        
+        while (!stack.isEmpty()) {
+            int end = stack.removeLast();
+            int start = stack.removeLast();
+            int middle = upMiddles[stack.removeLast()];
+            if (middle == NO_MIDDLE) {
+                out.add(end);
+            } else {
+                // 先处理前半段，因此后半段先入栈
+                push(stack, findUpEdge(middle, end), middle, end);
+                push(stack, findUpEdge(start, middle), start, middle);
+            }
+        }
+    }
+    
+    private static void push(SearchWorkspace.IntList stack, int edge, int from, int to) {
+        stack.add(edge);
+        stack.add(from);
+        stack.add(to);
+    }
+    
+    /**
+     * 查找两城市之间的向上边（存放在层级较低的一端）
+     */
+    private int findUpEdge(int a, int b) {
+        int low = ranks[a] < ranks[b] ? a : b;
+        int high = low == a ? b : a;
+        for (int e = upOffsets[low], last = upOffsets[low + 1]; e < last; e++) {
+            if (upTargets[e] == high) {
+                return e;
+            }
+        }
+        throw new IllegalStateException("Missing hierarchy edge: " + a + " - " + b);
+    }
+    
+    /**
+     * 收缩过程使用的可变邻接表与见证搜索工作区
+     */
+    private static final class Contractor {
+        private final CompactGraph compact;
+        private final int n;
+        private final int[][] neighbors;
+        private final int[][] weights;
+        private final int[][] middles;
+        private final int[] degrees;
+        // 城市被收缩时，其剩余邻居层级都更高，这些边即为该城市的向上边
+        private final int[][] upNeighbors;
+        private final int[][] upEdgeWeights;
+        private final int[][] upEdgeMiddles;
+        private final int[] deletedNeighbors;
+        
+        // 见证搜索工作区：距离数组配合代数标记，避免每次搜索都清空
+        private final int[] witnessDistances;
+        private final int[] witnessStamps;
+        private final int[] targetStamps;     // 标记本次见证搜索需要确定距离的目标城市
+        private int witnessGeneration;
+        private final IndexedMinHeap witnessQueue;
+        
+        Contractor(CompactGraph compact) {
+            this.compact = compact;
+            this.n = compact.getCityCount();
+            this.neighbors = new int[n][];
+            this.weights = new int[n][];
+            this.middles = new int[n][];
+            this.degrees = new int[n];
+            this.upNeighbors = new int[n][];
+            this.upEdgeWeights = new int[n][];
+            this.upEdgeMiddles = new int[n][];
+            this.deletedNeighbors = new int[n];
+            this.witnessDistances = new int[n];
+            this.witnessStamps = new int[n];
+            this.targetStamps = new int[n];
+            this.witnessQueue = new IndexedMinHeap(n);
+            
+            for (int u = 0; u < n; u++) {
+                int capacity = Math.max(4, compact.degree(u));
+                neighbors[u] = new int[capacity];
+                weights[u] = new int[capacity];
+                middles[u] = new int[capacity];
+            }
+            // 复制原始道路，去掉自环，平行道路只保留最短的一条
+            for (int u = 0; u < n; u++) {
+                for (int e = compact.firstEdge(u), last = compact.endEdge(u); e < last; e++) {
+                    int v = compact.target(e);
+                    if (v != u) {
+                        addOrImprove(u, v, compact.weight(e), NO_MIDDLE);
+                    }
+                }
+            }
+        }
+        
+        ContractionHierarchy contract() {
+            // 以优先级为键的索引堆，优先级变化时延迟更新
+            IndexedMinHeap order = new IndexedMinHeap(n);
+            for (int v = 0; v < n; v++) {
+                order.insertOrDecrease(v, priority(v));
+            }
+            
+            int[] ranks = new int[n];
+            int rank = 0;
+            while (!order.isEmpty()) {
+                int v = order.peek();
+                
+                // 重新计算优先级，如果已不是最小的就更新键值后重新选择
+                int current = priority(v);
+                if (current > order.peekKey()) {
+                    order.update(v, current);
+                    if (order.peek() != v) {
+                        continue;
+                    }
+                }
+                order.poll();
+                
+                ranks[v] = rank++;
+                contractNode(v, true);
+            }
+            
+            return buildUpwardGraph(ranks);
+        }
+        
+        /**
+         * 收缩优先级：边差（需添加的捷径数 - 剩余邻居数）加上已被收缩的邻居数
+         */
+        private int priority(int v) {
+            return contractNode(v, false) - degrees[v] + deletedNeighbors[v];
+        }
+        
+        /**
+         * 收缩城市v（或仅模拟收缩）
+         * 对v的每一对未收缩邻居(u, w)，若不经过v找不到不长于 u-v-w 的见证路径，则需要捷径u-w
+         * @param v 城市编号
+         * @param apply 为true时真正收缩并添加捷径，为false时只统计
+         * @return 需要添加的捷径数量
+         */
+        private int contractNode(int v, boolean apply) {
+            int shortcuts = 0;
+            int degree = degrees[v];
+            
+            // 收缩过程中v的邻接表不会改变（捷径只加在邻居之间）
+            int maxWeight = 0;
+            for (int i = 0; i < degree; i++) {
+                maxWeight = Math.max(maxWeight, weights[v][i]);
+            }
+            
+            for (int i = 0; i < degree; i++) {
+                int u = neighbors[v][i];
+                int weightUV = weights[v][i];
+                
+                // 以u为起点做一次见证搜索，覆盖所有排在u之后的邻居
+                if (i + 1 == degree) {
+                    break;
+                }
+                witnessSearch(u, v, weightUV + maxWeight, i + 1, degree);
+                
+                for (int j = i + 1; j < degree; j++) {
+                    int w = neighbors[v][j];
+                    int viaV = weightUV + weights[v][j];
+                    if (witnessDistance(w) > viaV) {
+                        shortcuts++;
+                        if (apply) {
+                            addOrImprove(u, w, viaV, v);
+                            addOrImprove(w, u, viaV, v);
+                        }
+                    }
+                }
+            }
+            
+            if (apply) {
+                // 邻接表中只保留未收缩的城市，因此v当前的邻居就是它的向上边
+                upNeighbors[v] = Arrays.copyOf(neighbors[v], degree);
+                upEdgeWeights[v] = Arrays.copyOf(weights[v], degree);
+                upEdgeMiddles[v] = Arrays.copyOf(middles[v], degree);
+                
+                // 从邻居的邻接表中移除v，之后的见证搜索不再经过它
+                for (int i = 0; i < degree; i++) {
+                    int u = neighbors[v][i];
+                    remove(u, v);
+                    deletedNeighbors[u]++;
+                }
+                neighbors[v] = null;
+                weights[v] = null;
+                middles[v] = null;
+                degrees[v] = 0;
+            }
+            return shortcuts;
+        }
+        
+        /**
+         * 从source出发、不经过excluded的受限Dijkstra（已收缩城市已不在邻接表中）
+         * 所有目标城市都确定距离、距离超过上限或确定城市数达到上限时停止
+         */
+        private void witnessSearch(int source, int excluded, int maxDistance, int firstTarget, int lastTarget) {
+            witnessGeneration++;
+            witnessQueue.clear();
+            
+            // 目标为excluded的邻接表中 [firstTarget, lastTarget) 区间的城市，全部确定后即可提前结束
+            int remainingTargets = lastTarget - firstTarget;
+            for (int j = firstTarget; j < lastTarget; j++) {
+                targetStamps[neighbors[excluded][j]] = witnessGeneration;
+            }
+            witnessStamps[source] = witnessGeneration;
+            witnessDistances[source] = 0;
+            witnessQueue.insertOrDecrease(source, 0);
+            
+            int settled = 0;
+            while (!witnessQueue.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+                int u = witnessQueue.poll();
+                int currentDistance = witnessDistances[u];
+                if (currentDistance > maxDistance) {
+                    break;
+                }
+                settled++;
+                if (targetStamps[u] == witnessGeneration && --remainingTargets == 0) {
+                    break;
+                }
+                
+                for (int i = 0; i < degrees[u]; i++) {
+                    int x = neighbors[u][i];
+                    if (x == excluded) {
+                        continue;
+                    }
+                    int newDistance = currentDistance + weights[u][i];
+                    if (witnessStamps[x] != witnessGeneration || newDistance < witnessDistances[x]) {
+                        witnessStamps[x] = witnessGeneration;
+                        witnessDistances[x] = newDistance;
+                        witnessQueue.insertOrDecrease(x, newDistance);
+                    }
+                }
+            }
+        }
+        
+        private int witnessDistance(int w) {
+            return witnessStamps[w] == witnessGeneration ? witnessDistances[w] : Integer.MAX_VALUE;
+        }
+        
+        /**
+         * 在u的邻接表中添加到v的边；已有更短或等长的边时忽略，已有更长的边时就地替换
+         */
+        private void addOrImprove(int u, int v, int weight, int middle) {
+            for (int i = 0; i < degrees[u]; i++) {
+                if (neighbors[u][i] == v) {
+                    if (weight < weights[u][i]) {
+                        weights[u][i] = weight;
+                        middles[u][i] = middle;
+                    }
+                    return;
+                }
+            }
+            
+            if (degrees[u] == neighbors[u].length) {
+                int capacity = neighbors[u].length * 2;
+                neighbors[u] = Arrays.copyOf(neighbors[u], capacity);
+                weights[u] = Arrays.copyOf(weights[u], capacity);
+                middles[u] = Arrays.copyOf(middles[u], capacity);
+            }
+            neighbors[u][degrees[u]] = v;
+            weights[u][degrees[u]] = weight;
+            middles[u][degrees[u]] = middle;
+            degrees[u]++;
+        }
+        
+        /**
+         * 从u的邻接表中移除到v的边
+         */
+        private void remove(int u, int v) {
+            for (int i = 0; i < degrees[u]; i++) {
+                if (neighbors[u][i] == v) {
+                    int last = --degrees[u];
+                    neighbors[u][i] = neighbors[u][last];
+                    weights[u][i] = weights[u][last];
+                    middles[u][i] = middles[u][last];
+                    return;
+                }
+            }
+        }
+        
+        /**
+         * 收缩完成后，把每个城市收缩时记录的向上边整理为CSR格式的向上图
+         */
+        private ContractionHierarchy buildUpwardGraph(int[] ranks) {
+            int[] upOffsets = new int[n + 1];
+            for (int u = 0; u < n; u++) {
+                upOffsets[u + 1] = upOffsets[u] + upNeighbors[u].length;
+            }
+            
+            int[] upTargets = new int[upOffsets[n]];
+            int[] upWeights = new int[upOffsets[n]];
+            int[] upMiddles = new int[upOffsets[n]];
+            for (int u = 0; u < n; u++) {
+                System.arraycopy(upNeighbors[u], 0, upTargets, upOffsets[u], upNeighbors[u].length);
+                System.arraycopy(upEdgeWeights[u], 0, upWeights, upOffsets[u], upNeighbors[u].length);
+                System.arraycopy(upEdgeMiddles[u], 0, upMiddles, upOffsets[u], upNeighbors[u].length);
+            }
+            
+            return new ContractionHierarchy(compact, ranks, upOffsets, upTargets, upWeights, upMiddles);
+        }
+    }
+}
@@ -1,140 +1,500 @@
 package com.roadtrip.algorithm;
 
 import com.roadtrip.model.City;
+import com.roadtrip.model.CompactGraph;
 import com.roadtrip.model.Graph;
-import com.roadtrip.model.Road;
 
 import java.util.*;
 
 /**
  * Dijkstra最短路径算法实现
+ * 支持普通Dijkstra、基于经纬度的A*搜索、基于地标的ALT搜索、双向Dijkstra和收缩层次查询等模式
  */
 public class DijkstraAlgorithm {
+    // ALT搜索使用的地标数量
+    private static final int LANDMARK_COUNT = 16;
+    
     private final Graph graph;
+    private final SearchMode defaultMode;
+    
+    // A*启发函数缓存，与生成它的快照绑定
+    private CompactGraph heuristicSnapshot;
+    private GreatCircleHeuristic heuristic;
+    
+    // ALT地标距离表缓存，与生成它的快照绑定
+    private CompactGraph landmarkSnapshot;
+    private LandmarkIndex landmarks;
+    
+    // 收缩层次，首次使用时构建，也可以通过setContractionHierarchy装入已保存的结果；
+    // hierarchySnapshot为最近一次确认与之对应的快照
+    private ContractionHierarchy hierarchy;
+    private CompactGraph hierarchySnapshot;
+    
+    /**
+     * 搜索模式
+     */
+    public enum SearchMode {
+        /** 普通Dijkstra，向所有方向均匀扩展 */
+        DIJKSTRA,
+        /** A*搜索，使用大圆距离启发函数；城市缺少经纬度时退化为普通Dijkstra */
+        A_STAR,
+        /** ALT搜索，使用预先计算的地标距离表和三角不等式估计剩余距离，不需要经纬度 */
+        ALT,
+        /** 双向Dijkstra，从起点和终点同时搜索，在中间相遇 */
+        BIDIRECTIONAL,
+        /** 收缩层次查询，首次使用时需要预处理整张图 */
+        CONTRACTION_HIERARCHY
+    }
+    
+    /**
+     * 优先队列策略
+     */
+    public enum QueueType {
+        /** 根据最长道路长度自动选择：桶数量不超过城市数时使用桶队列，否则使用堆 */
+        AUTO,
+        /** 索引4叉堆，适用于任意非负长度 */
+        HEAP,
+        /** 单调桶队列（Dial算法），道路长度为较小整数时每次操作为O(1) */
+        BUCKET
+    }
     
     /**
      * 构造函数
      * @param graph 城市路网图
      */
     public DijkstraAlgorithm(Graph graph) {
+        this(graph, SearchMode.DIJKSTRA);
+    }
+    
+    /**
+     * 构造函数
+     * @param graph 城市路网图
+     * @param defaultMode 默认搜索模式
+     */
+    public DijkstraAlgorithm(Graph graph, SearchMode defaultMode) {
         this.graph = graph;
+        this.defaultMode = defaultMode;
     }
     
     /**
-     * 计算从起点到终点的最短路径
+     * 使用默认搜索模式计算从起点到终点的最短路径
      * @param start 起点城市
      * @param end 终点城市
      * @return 最短路径结果
      */
     public ShortestPathResult findShortestPath(City start, City end) {
+        return findShortestPath(start, end, defaultMode);
+    }
+    
+    /**
+     * 计算从起点到终点的最短路径
+     * 在图的紧凑快照上以整数编号进行搜索
+     * @param start 起点城市
+     * @param end 终点城市
+     * @param mode 搜索模式
+     * @return 最短路径结果
+     */
+    public ShortestPathResult findShortestPath(City start, City end, SearchMode mode) {
+        return findShortestPath(start, end, mode, QueueType.AUTO);
+    }
+    
+    /**
+     * 计算从起点到终点的最短路径
+     * 在图的紧凑快照上以整数编号进行搜索。收缩层次查询的捷径长度可能很大，始终使用堆
+     * @param start 起点城市
+     * @param end 终点城市
+     * @param mode 搜索模式
+     * @param queueType 优先队列策略
+     * @return 最短路径结果
+     */
+    public ShortestPathResult findShortestPath(City start, City end, SearchMode mode, QueueType queueType) {
+        CompactGraph compact = graph.freeze();
+        int source = compact.getId(start);
+        int target = compact.getId(end);
+        
         // 路径不存在的情况
-        if (!graph.containsCity(start) || !graph.containsCity(end)) {
+        if (source < 0 || target < 0) {
             return null;
         }
         
-        // 初始化距离和前驱节点映射
-        Map<City, Integer> distances = new HashMap<>();
-        Map<City, City> predecessors = new HashMap<>();
+        if (mode == SearchMode.BIDIRECTIONAL) {
+            return searchBidirectional(compact, source, target, queueType);
+        }
+        if (mode == SearchMode.CONTRACTION_HIERARCHY) {
+            return hierarchyFor(compact).query(source, target);
+        }
+        
+        DistanceEstimator estimator = null;
+        if (mode == SearchMode.A_STAR) {
+            estimator = heuristicFor(compact);
+        } else if (mode == SearchMode.ALT) {
+            estimator = landmarksFor(compact);
+        }
+        return search(compact, source, target, estimator, queueType);
+    }
+    
+    /**
+     * 计算多个起点到多个终点的最短距离矩阵
+     * 每个起点做一次普通Dijkstra搜索，所有终点都确定距离后立即停止，
+     * 因此k个起点只需要k次搜索；具体路线保存为最短路径树，按需展开
+     * @param sources 起点城市列表
+     * @param targets 终点城市列表
+     * @return 距离矩阵，不在图中或不可达的城市对距离为DistanceMatrix.UNREACHABLE
+     */
+    public DistanceMatrix distanceMatrix(List<City> sources, List<City> targets) {
+        CompactGraph compact = graph.freeze();
+        int n = compact.getCityCount();
         
-        // 初始化优先队列
-        PriorityQueue<CityDistance> queue = new PriorityQueue<>();
+        // 标记终点城市，并统计需要确定距离的不同终点数
+        int[] targetIds = new int[targets.size()];
+        boolean[] isTarget = new boolean[n];
+        int distinctTargets = 0;
+        for (int j = 0; j < targetIds.length; j++) {
+            targetIds[j] = compact.getId(targets.get(j));
+            if (targetIds[j] >= 0 && !isTarget[targetIds[j]]) {
+                isTarget[targetIds[j]] = true;
+                distinctTargets++;
+            }
+        }
         
-        // 初始化所有城市的距离为无穷大
-        for (City city : graph.getCities()) {
-            distances.put(city, Integer.MAX_VALUE);
+        int[][] distances = new int[sources.size()][targetIds.length];
+        int[][] treeNodes = new int[sources.size()][];
+        int[][] treeParents = new int[sources.size()][];
+        int[][] targetPositions = new int[sources.size()][targetIds.length];
+        for (int i = 0; i < distances.length; i++) {
+            Arrays.fill(distances[i], DistanceMatrix.UNREACHABLE);
+            Arrays.fill(targetPositions[i], -1);
+            int source = compact.getId(sources.get(i));
+            if (source < 0) {
+                treeNodes[i] = new int[0];
+                treeParents[i] = new int[0];
+                continue;
+            }
+            
+            SearchWorkspace workspace = searchToTargets(compact, source, isTarget, distinctTargets);
+            SearchWorkspace.Labels labels = workspace.forward;
+            for (int j = 0; j < targetIds.length; j++) {
+                if (targetIds[j] >= 0 && labels.reached(targetIds[j])) {
+                    distances[i][j] = labels.distance(targetIds[j]);
+                }
+            }
+            
+            // 只保留通向终点的路径，而不是复制整个前驱数组
+            SearchWorkspace.IntList nodes = new SearchWorkspace.IntList();
+            SearchWorkspace.IntList parents = new SearchWorkspace.IntList();
+            extractPathTree(workspace, targetIds, nodes, parents, targetPositions[i]);
+            treeNodes[i] = nodes.toArray();
+            treeParents[i] = parents.toArray();
         }
         
-        // 起点距离设为0
-        distances.put(start, 0);
-        queue.add(new CityDistance(start, 0));
+        return new DistanceMatrix(compact, sources, targets, distances, treeNodes, treeParents, targetPositions);
+    }
+    
+    /**
+     * 从起点出发的普通Dijkstra搜索，所有终点都确定距离后停止
+     * @param compact 图的紧凑快照
+     * @param source 起点城市编号
+     * @param isTarget 终点标记
+     * @param targetCount 不同终点的数量
+     * @return 本次搜索的工作区，结果在forward标签中
+     */
+    private SearchWorkspace searchToTargets(CompactGraph compact, int source, boolean[] isTarget, int targetCount) {
+        SearchWorkspace workspace = SearchWorkspace.acquire(compact.getCityCount());
+        SearchWorkspace.Labels labels = workspace.forward;
+        NodeQueue queue = newQueue(compact, labels, QueueType.AUTO, false);
+        
+        labels.set(source, 0, -1);
+        queue.insertOrDecrease(source, 0);
         
-        // Dijkstra算法主循环
+        int remaining = targetCount;
         while (!queue.isEmpty()) {
-            CityDistance current = queue.poll();
-            City currentCity = current.getCity();
-            int currentDistance = current.getDistance();
+            int u = queue.poll();
+            int currentDistance = labels.distance(u);
             
-            // 如果到达终点，结束搜索
-            if (currentCity.equals(end)) {
+            // 最后一个终点确定距离后不必继续扩展
+            if (isTarget[u] && --remaining == 0) {
                 break;
             }
             
-            // 如果当前距离大于已知最短距离，跳过
-            if (currentDistance > distances.get(currentCity)) {
+            for (int e = compact.firstEdge(u), last = compact.endEdge(u); e < last; e++) {
+                int v = compact.target(e);
+                int newDistance = currentDistance + compact.weight(e);
+                if (newDistance < labels.distance(v)) {
+                    labels.set(v, newDistance, u);
+                    queue.insertOrDecrease(v, newDistance);
+                }
+            }
+        }
+        return workspace;
+    }
+    
+    /**
+     * 从一次搜索的最短路径树中取出通向各终点的路径，保存为紧凑的树
+     * 城市按加入的顺序得到位置，共享的前缀只加入一次，
+     * 因此结果的大小与这些路径经过的城市数成正比，与整张图的大小无关
+     * @param workspace 刚完成搜索的工作区，backward标签用来记录城市在树中的位置
+     * @param targetIds 终点城市编号，不在图中时为-1
+     * @param nodes 输出：每个位置上的城市编号
+     * @param parents 输出：每个位置的父节点位置，起点为-1
+     * @param positions 输出：每个终点的位置，不可达时保持-1
+     */
+    private static void extractPathTree(SearchWorkspace workspace, int[] targetIds, SearchWorkspace.IntList nodes,
+                                        SearchWorkspace.IntList parents, int[] positions) {
+        SearchWorkspace.Labels tree = workspace.forward;
+        SearchWorkspace.Labels position = workspace.backward;
+        SearchWorkspace.IntList chain = workspace.stack;
+        for (int j = 0; j < targetIds.length; j++) {
+            int target = targetIds[j];
+            if (target < 0 || !tree.reached(target)) {
                 continue;
             }
             
-            // 遍历当前城市的所有邻接城市
-            for (Road road : graph.getAdjacentRoads(currentCity)) {
-                City neighbor = road.getOtherCity(currentCity);
-                int distance = road.getDistance();
-                int newDistance = currentDistance + distance;
+            // 沿前驱向上，直到起点之上或已经加入树的城市
+            chain.clear();
+            int v = target;
+            while (v != -1 && !position.reached(v)) {
+                chain.add(v);
+                v = tree.predecessor(v);
+            }
+            
+            // 从上往下依次加入
+            int parent = v == -1 ? -1 : position.distance(v);
+            while (!chain.isEmpty()) {
+                int city = chain.removeLast();
+                position.set(city, nodes.size(), -1);
+                nodes.add(city);
+                parents.add(parent);
+                parent = position.distance(city);
+            }
+            positions[j] = position.distance(target);
+        }
+    }
+    
+    /**
+     * 获取快照对应的A*启发函数
+     * @param compact 图的紧凑快照
+     * @return 启发函数，如果城市缺少经纬度返回null
+     */
+    private synchronized GreatCircleHeuristic heuristicFor(CompactGraph compact) {
+        if (heuristicSnapshot != compact) {
+            heuristic = GreatCircleHeuristic.build(compact);
+            heuristicSnapshot = compact;
+        }
+        return heuristic;
+    }
+    
+    /**
+     * 获取快照对应的ALT地标距离表，首次使用时选取地标并计算
+     * @param compact 图的紧凑快照
+     * @return 地标距离表
+     */
+    private synchronized LandmarkIndex landmarksFor(CompactGraph compact) {
+        if (landmarkSnapshot != compact) {
+            landmarks = LandmarkIndex.build(compact, LANDMARK_COUNT);
+            landmarkSnapshot = compact;
+        }
+        return landmarks;
+    }
+    
+    /**
+     * 装入预先构建（或从文件加载）的收缩层次
+     * @param hierarchy 收缩层次
+     */
+    public synchronized void setContractionHierarchy(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+        this.hierarchySnapshot = null;
+    }
+    
+    /**
+     * 获取快照对应的收缩层次，不存在或已过期时重新构建
+     * @param compact 图的紧凑快照
+     * @return 收缩层次
+     */
+    private synchronized ContractionHierarchy hierarchyFor(CompactGraph compact) {
+        // 同一个快照只检查一次，道路变化后freeze()会给出新的快照
+        if (hierarchySnapshot != compact) {
+            if (hierarchy == null || !hierarchy.matches(compact)) {
+                hierarchy = ContractionHierarchy.build(compact);
+            }
+            hierarchySnapshot = compact;
+        }
+        return hierarchy;
+    }
+    
+    /**
+     * 单向最短路径搜索
+     * 估计函数为null时即为普通Dijkstra，否则按 已走距离 + 估计剩余距离 排序（A*或ALT）
+     * @param compact 图的紧凑快照
+     * @param source 起点城市编号
+     * @param target 终点城市编号
+     * @param estimator 剩余距离估计，可以为null
+     * @param queueType 优先队列策略
+     * @return 最短路径结果
+     */
+    private ShortestPathResult search(CompactGraph compact, int source, int target,
+                                      DistanceEstimator estimator, QueueType queueType) {
+        // 取得本线程的工作区，距离和前驱标签在重置后全部视为未访问
+        SearchWorkspace.Labels labels = SearchWorkspace.acquire(compact.getCityCount()).forward;
+        
+        // 初始化优先队列（每个城市至多入队一次）
+        NodeQueue queue = newQueue(compact, labels, queueType, estimator != null);
+        int settled = 0;
+        
+        // 起点距离设为0
+        labels.set(source, 0, -1);
+        queue.insertOrDecrease(source, estimate(estimator, source, target));
+        
+        // 主循环
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            int currentDistance = labels.distance(u);
+            settled++;
+            
+            // 如果到达终点，结束搜索
+            if (u == target) {
+                break;
+            }
+            
+            // 遍历当前城市的所有邻边
+            for (int e = compact.firstEdge(u), last = compact.endEdge(u); e < last; e++) {
+                int v = compact.target(e);
+                int newDistance = currentDistance + compact.weight(e);
                 
                 // 如果找到更短的路径，更新距离
-                if (newDistance < distances.get(neighbor)) {
-                    distances.put(neighbor, newDistance);
-                    predecessors.put(neighbor, currentCity);
-                    queue.add(new CityDistance(neighbor, newDistance));
+                if (newDistance < labels.distance(v)) {
+                    labels.set(v, newDistance, u);
+                    queue.insertOrDecrease(v, newDistance + estimate(estimator, v, target));
                 }
             }
         }
         
         // 如果终点不可达
-        if (distances.get(end) == Integer.MAX_VALUE) {
+        if (!labels.reached(target)) {
             return null;
         }
         
         // 重建最短路径
-        List<City> path = reconstructPath(start, end, predecessors);
-        int totalDistance = distances.get(end);
+        List<City> path = toPath(compact, labels.pathTo(target));
         
-        return new ShortestPathResult(path, totalDistance);
+        return new ShortestPathResult(path, labels.distance(target), settled);
     }
     
     /**
-     * 根据前驱节点映射重建最短路径
-     * @param start 起点城市
-     * @param end 终点城市
-     * @param predecessors 前驱节点映射
-     * @return 最短路径城市列表
+     * 双向Dijkstra搜索
+     * 道路是无向的，因此反向搜索与正向搜索使用同一份邻接数组。
+     * 每轮扩展队首距离较小的一侧；当两侧队首距离之和不小于已知最短路径长度时，
+     * 该长度即为最短距离
+     * @param compact 图的紧凑快照
+     * @param source 起点城市编号
+     * @param target 终点城市编号
+     * @param queueType 优先队列策略
+     * @return 最短路径结果
      */
-    private List<City> reconstructPath(City start, City end, Map<City, City> predecessors) {
-        LinkedList<City> path = new LinkedList<>();
-        City current = end;
+    private ShortestPathResult searchBidirectional(CompactGraph compact, int source, int target, QueueType queueType) {
+        SearchWorkspace workspace = SearchWorkspace.acquire(compact.getCityCount());
+        SearchWorkspace.Labels forwardLabels = workspace.forward;
+        SearchWorkspace.Labels backwardLabels = workspace.backward;
         
-        // 从终点回溯到起点
-        while (current != null) {
-            path.addFirst(current);
-            current = predecessors.get(current);
-        }
+        NodeQueue forwardQueue = newQueue(compact, forwardLabels, queueType, false);
+        NodeQueue backwardQueue = newQueue(compact, backwardLabels, queueType, false);
         
-        return path;
-    }
-    
-    /**
-     * 城市距离类，用于优先队列排序
-     */
-    private static class CityDistance implements Comparable<CityDistance> {
-        private final City city;
-        private final int distance;
+        forwardLabels.set(source, 0, -1);
+        backwardLabels.set(target, 0, -1);
+        forwardQueue.insertOrDecrease(source, 0);
+        backwardQueue.insertOrDecrease(target, 0);
         
-        public CityDistance(City city, int distance) {
-            this.city = city;
-            this.distance = distance;
+        // 当前已知的最短路径长度及其相遇城市
+        int best = source == target ? 0 : Integer.MAX_VALUE;
+        int meeting = source == target ? source : -1;
+        int settled = 0;
+        
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            // 停止条件：两侧队首距离之和已不可能产生更短的路径
+            long frontier = (long) forwardQueue.peekKey() + backwardQueue.peekKey();
+            if (frontier >= best) {
+                break;
+            }
+            
+            // 扩展队首距离较小的一侧
+            boolean forward = forwardQueue.peekKey() <= backwardQueue.peekKey();
+            NodeQueue queue = forward ? forwardQueue : backwardQueue;
+            SearchWorkspace.Labels labels = forward ? forwardLabels : backwardLabels;
+            SearchWorkspace.Labels otherLabels = forward ? backwardLabels : forwardLabels;
+            
+            int u = queue.poll();
+            int currentDistance = labels.distance(u);
+            settled++;
+            
+            for (int e = compact.firstEdge(u), last = compact.endEdge(u); e < last; e++) {
+                int v = compact.target(e);
+                int newDistance = currentDistance + compact.weight(e);
+                
+                if (newDistance < labels.distance(v)) {
+                    labels.set(v, newDistance, u);
+                    queue.insertOrDecrease(v, newDistance);
+                }
+                
+                // 另一侧已到达v时，检查经过v的路径能否更新最短长度
+                int otherDistance = otherLabels.distance(v);
+                if (otherDistance != SearchWorkspace.UNREACHED && labels.distance(v) + otherDistance < best) {
+                    best = labels.distance(v) + otherDistance;
+                    meeting = v;
+                }
+            }
         }
         
-        public City getCity() {
-            return city;
+        // 如果终点不可达
+        if (meeting < 0) {
+            return null;
         }
         
-        public int getDistance() {
-            return distance;
+        // 起点 -> 相遇城市 的正向路径，再接上 相遇城市 -> 终点 的反向路径
+        SearchWorkspace.IntList ids = workspace.path;
+        for (int current = meeting; current != -1; current = forwardLabels.predecessor(current)) {
+            ids.add(current);
+        }
+        ids.reverse();
+        for (int current = backwardLabels.predecessor(meeting); current != -1; current = backwardLabels.predecessor(current)) {
+            ids.add(current);
         }
         
-        @Override
-        public int compareTo(CityDistance other) {
-            return Integer.compare(this.distance, other.distance);
+        return new ShortestPathResult(toPath(compact, ids.toArray()), best, settled);
+    }
+    
+    /**
+     * 创建（复用）优先队列
+     * 普通Dijkstra中队列里的键与最小键之差不超过最长道路长度；
+     * A*和ALT的估计函数满足一致性（h(u) <= w(u, v) + h(v)），差值不超过最长道路长度的两倍
+     * @param compact 图的紧凑快照
+     * @param labels 队列所属方向的工作区标签
+     * @param queueType 优先队列策略
+     * @param goalDirected 键中是否包含剩余距离估计
+     * @return 优先队列
+     */
+    private static NodeQueue newQueue(CompactGraph compact, SearchWorkspace.Labels labels,
+                                      QueueType queueType, boolean goalDirected) {
+        int keySpan = goalDirected ? 2 * compact.getMaxWeight() : compact.getMaxWeight();
+        boolean useBuckets = queueType == QueueType.BUCKET
+                || (queueType == QueueType.AUTO && BucketQueue.bucketCountFor(keySpan) <= compact.getCityCount());
+        return useBuckets ? labels.buckets(keySpan) : labels.heap();
+    }
+    
+    private static int estimate(DistanceEstimator estimator, int u, int target) {
+        return estimator == null ? 0 : estimator.estimate(u, target);
+    }
+    
+    /**
+     * 将城市编号序列转换为城市列表
+     * @param compact 图的紧凑快照
+     * @param ids 城市编号序列
+     * @return 城市列表
+     */
+    static List<City> toPath(CompactGraph compact, int[] ids) {
+        List<City> path = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            path.add(compact.getCity(id));
         }
+        return path;
     }
     
     /**
@@ -143,10 +503,16 @@ public class DijkstraAlgorithm {
     public static class ShortestPathResult {
         private final List<City> path;
         private final int distance;
+        private final int settledNodes;
         
         public ShortestPathResult(List<City> path, int distance) {
+            this(path, distance, 0);
+        }
+        
+        public ShortestPathResult(List<City> path, int distance, int settledNodes) {
             this.path = path;
             this.distance = distance;
+            this.settledNodes = settledNodes;
         }
         
         public List<City> getPath() {
@@ -156,5 +522,13 @@ public class DijkstraAlgorithm {
         public int getDistance() {
             return distance;
         }
+        
+        /**
+         * 获取搜索过程中确定最短距离的城市数量
+         * @return 已确定的城市数量
+         */
+        public int getSettledNodes() {
+            return settledNodes;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,17 @@
+package com.roadtrip.algorithm;
+
+/**
+ * 目标导向搜索（A*、ALT）使用的剩余距离估计
+ * 实现必须满足一致性：对任意道路(u, v, w)，estimate(u) <= w + estimate(v)，且对终点估计为0，
+ * 这样按 已走距离 + 估计值 排序的搜索仍能得到最短路径
+ */
+interface DistanceEstimator {
+    
+    /**
+     * 估计从城市 u 到城市 target 的剩余道路里程，不得高估
+     * @param u 当前城市编号
+     * @param target 目标城市编号
+     * @return 估计里程
+     */
+    int estimate(int u, int target);
+}
@@ -0,0 +1,103 @@
+package com.roadtrip.algorithm;
+
+import com.roadtrip.model.City;
+import com.roadtrip.model.CompactGraph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 起点集合到终点集合的最短距离矩阵
+ * 每个起点只做一次搜索，距离保存在int[][]中；
+ * 同时保留每次搜索中通向各终点的那部分最短路径树，需要具体路线时再展开。
+ * 路径树只包含这些路线经过的城市，共享的前缀只保存一次，大小与整张图无关
+ */
+public class DistanceMatrix {
+    /** 不可达时的距离值 */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+    
+    private final CompactGraph compact;
+    private final List<City> sources;
+    private final List<City> targets;
+    private final int[][] distances;       // distances[i][j]：第i个起点到第j个终点的距离
+    // 第i个起点的路径树：treeNodes[i][p]为位置p上的城市编号，treeParents[i][p]为父节点的位置（起点为-1）
+    private final int[][] treeNodes;
+    private final int[][] treeParents;
+    private final int[][] targetPositions; // targetPositions[i][j]：第j个终点在第i棵路径树中的位置，不可达时为-1
+    
+    DistanceMatrix(CompactGraph compact, List<City> sources, List<City> targets, int[][] distances,
+                   int[][] treeNodes, int[][] treeParents, int[][] targetPositions) {
+        this.compact = compact;
+        this.sources = Collections.unmodifiableList(new ArrayList<>(sources));
+        this.targets = Collections.unmodifiableList(new ArrayList<>(targets));
+        this.distances = distances;
+        this.treeNodes = treeNodes;
+        this.treeParents = treeParents;
+        this.targetPositions = targetPositions;
+    }
+    
+    public List<City> getSources() {
+        return sources;
+    }
+    
+    public List<City> getTargets() {
+        return targets;
+    }
+    
+    /**
+     * 获取第i个起点到第j个终点的最短距离
+     * @param i 起点下标
+     * @param j 终点下标
+     * @return 距离，不可达时为UNREACHABLE
+     */
+    public int getDistance(int i, int j) {
+        return distances[i][j];
+    }
+    
+    /**
+     * 判断第i个起点能否到达第j个终点
+     * @param i 起点下标
+     * @param j 终点下标
+     * @return 可达返回true
+     */
+    public boolean isReachable(int i, int j) {
+        return distances[i][j] != UNREACHABLE;
+    }
+    
+    /**
+     * 获取距离矩阵的副本
+     * @return 距离矩阵，行为起点，列为终点
+     */
+    public int[][] toArray() {
+        int[][] copy = new int[distances.length][];
+        for (int i = 0; i < distances.length; i++) {
+            copy[i] = distances[i].clone();
+        }
+        return copy;
+    }
+    
+    /**
+     * 展开第i个起点到第j个终点的最短路线
+     * @param i 起点下标
+     * @param j 终点下标
+     * @return 城市列表，不可达时返回null
+     */
+    public List<City> getPath(int i, int j) {
+        if (!isReachable(i, j)) {
+            return null;
+        }
+        
+        int[] nodes = treeNodes[i];
+        int[] parents = treeParents[i];
+        int length = 0;
+        for (int p = targetPositions[i][j]; p != -1; p = parents[p]) {
+            length++;
+        }
+        int[] ids = new int[length];
+        for (int p = targetPositions[i][j]; p != -1; p = parents[p]) {
+            ids[--length] = nodes[p];
+        }
+        return Collections.unmodifiableList(DijkstraAlgorithm.toPath(compact, ids));
+    }
+}
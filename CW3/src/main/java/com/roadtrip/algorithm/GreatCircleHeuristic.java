@@ -0,0 +1,89 @@
+package com.roadtrip.algorithm;
+
+import com.roadtrip.model.City;
+import com.roadtrip.model.CompactGraph;
+
+/**
+ * A*搜索使用的大圆距离启发函数
+ * 估计值为 缩放系数 × 两城市间的大圆距离，缩放系数取所有道路中
+ * "道路里程 / 两端大圆距离" 的最小值，保证估计值不会超过真实道路里程
+ */
+final class GreatCircleHeuristic implements DistanceEstimator {
+    private static final double EARTH_RADIUS_MILES = 3958.8;
+    
+    private final double[] latitudes;      // 纬度（弧度）
+    private final double[] longitudes;     // 经度（弧度）
+    private final double[] cosLatitudes;   // 纬度余弦，预先计算
+    private final double scale;            // 大圆距离到道路里程的缩放系数
+    
+    private GreatCircleHeuristic(double[] latitudes, double[] longitudes, double[] cosLatitudes, double scale) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.cosLatitudes = cosLatitudes;
+        this.scale = scale;
+    }
+    
+    /**
+     * 为紧凑快照构建启发函数
+     * @param compact 图的紧凑快照
+     * @return 启发函数，如果有城市缺少经纬度则返回null
+     */
+    static GreatCircleHeuristic build(CompactGraph compact) {
+        int n = compact.getCityCount();
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        double[] cosLatitudes = new double[n];
+        
+        for (int u = 0; u < n; u++) {
+            City city = compact.getCity(u);
+            // 只要有一个城市没有坐标，估计值就无法保证不高估
+            if (!city.hasCoordinates()) {
+                return null;
+            }
+            latitudes[u] = Math.toRadians(city.getLatitude());
+            longitudes[u] = Math.toRadians(city.getLongitude());
+            cosLatitudes[u] = Math.cos(latitudes[u]);
+        }
+        
+        GreatCircleHeuristic heuristic = new GreatCircleHeuristic(latitudes, longitudes, cosLatitudes, 1.0);
+        
+        // 缩放系数取每条道路里程与其大圆距离之比的最小值
+        double scale = Double.MAX_VALUE;
+        for (int u = 0; u < n; u++) {
+            for (int e = compact.firstEdge(u), last = compact.endEdge(u); e < last; e++) {
+                double miles = heuristic.greatCircleMiles(u, compact.target(e));
+                if (miles > 0) {
+                    scale = Math.min(scale, compact.weight(e) / miles);
+                }
+            }
+        }
+        if (scale == Double.MAX_VALUE) {
+            scale = 0;
+        }
+        // 略微缩小系数，抵消浮点误差
+        scale *= 1 - 1e-9;
+        
+        return new GreatCircleHeuristic(latitudes, longitudes, cosLatitudes, scale);
+    }
+    
+    /**
+     * 估计从城市 u 到城市 target 的剩余道路里程（向下取整，不高估）
+     * @param u 当前城市编号
+     * @param target 目标城市编号
+     * @return 估计里程
+     */
+    @Override
+    public int estimate(int u, int target) {
+        return (int) (scale * greatCircleMiles(u, target));
+    }
+    
+    /**
+     * 使用haversine公式计算两城市之间的大圆距离
+     */
+    private double greatCircleMiles(int u, int v) {
+        double sinLat = Math.sin((latitudes[v] - latitudes[u]) / 2);
+        double sinLon = Math.sin((longitudes[v] - longitudes[u]) / 2);
+        double a = sinLat * sinLat + cosLatitudes[u] * cosLatitudes[v] * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_MILES * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+}
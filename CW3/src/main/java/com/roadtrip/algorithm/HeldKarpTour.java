@@ -0,0 +1,192 @@
+package com.roadtrip.algorithm;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Held-Karp状态压缩动态规划，求起点和终点固定时景点的最优访问顺序
+ * dp[S][j]表示从起点出发、恰好访问集合S中的景点、最后停在景点j的最短距离，
+ * 状态数为k * 2^k，时间复杂度O(k^2 * 2^k)
+ * 
+ * dp表是一个扁平的int数组，下标为S * k + j。dp[S][*]只依赖少一个景点的集合，
+ * 所以按集合大小（popcount）分层计算，同一层的集合互不依赖，在ForkJoin公共线程池中并行处理。
+ * 最优顺序由dp表反推得到，不需要额外的前驱表
+ */
+public class HeldKarpTour implements TourStrategy {
+    /** 默认的景点数上限，20个景点时dp表约80MB */
+    public static final int DEFAULT_MAX_STOPS = 20;
+    
+    private static final int INF = Integer.MAX_VALUE;
+    private static final int MAX_STOPS_LIMIT = 24; // k * 2^k仍在int范围内
+    private static final int PARALLEL_THRESHOLD = 256; // 一层的集合数少于此值时顺序计算
+    
+    private final int maxStops;
+    private final TourStrategy fallback;
+    
+    /**
+     * 构造函数，景点数超过默认上限时退化为贪心算法
+     */
+    public HeldKarpTour() {
+        this(DEFAULT_MAX_STOPS, new NearestNeighborTour());
+    }
+    
+    /**
+     * 构造函数
+     * @param maxStops 精确求解的景点数上限（最多24）
+     * @param fallback 景点数超过上限时使用的策略
+     */
+    public HeldKarpTour(int maxStops, TourStrategy fallback) {
+        if (maxStops < 0 || maxStops > MAX_STOPS_LIMIT) {
+            throw new IllegalArgumentException("景点数上限必须在0到" + MAX_STOPS_LIMIT + "之间: " + maxStops);
+        }
+        this.maxStops = maxStops;
+        this.fallback = fallback;
+    }
+    
+    @Override
+    public int[] order(DistanceMatrix matrix) {
+        return order(matrix, new TourBound());
+    }
+    
+    /**
+     * 求最优访问顺序，结果的长度同时作为上界和下界报告给bound；
+     * bound被取消时在两层之间停止计算并返回null
+     */
+    @Override
+    public int[] order(DistanceMatrix matrix, TourBound bound) {
+        int k = matrix.getTargets().size() - 1;
+        if (k > maxStops) {
+            return fallback.order(matrix, bound);
+        }
+        if (k == 0) {
+            return matrix.isReachable(0, 0) ? new int[0] : null;
+        }
+        
+        // 复制为扁平数组：startCost[j]为起点到景点j，cost[i * k + j]为景点i到景点j，endCost[i]为景点i到终点
+        int[] startCost = new int[k];
+        int[] endCost = new int[k];
+        int[] cost = new int[k * k];
+        for (int i = 0; i < k; i++) {
+            startCost[i] = matrix.getDistance(0, i);
+            endCost[i] = matrix.getDistance(i + 1, k);
+            for (int j = 0; j < k; j++) {
+                cost[i * k + j] = matrix.getDistance(i + 1, j);
+            }
+        }
+        
+        int full = (1 << k) - 1;
+        int[] dp = new int[(full + 1) * k];
+        Arrays.fill(dp, INF);
+        for (int j = 0; j < k; j++) {
+            dp[(1 << j) * k + j] = startCost[j];
+        }
+        
+        // 按popcount分层，逐层计算，层内并行
+        int[][] layers = layersByPopcount(k);
+        for (int size = 2; size <= k; size++) {
+            if (bound.isCancelled()) {
+                return null;
+            }
+            int[] layer = layers[size];
+            IntStream indices = IntStream.range(0, layer.length);
+            if (layer.length >= PARALLEL_THRESHOLD) {
+                indices = indices.parallel();
+            }
+            indices.forEach(index -> relax(layer[index], k, dp, cost));
+        }
+        
+        // 选择最后一个景点，使到终点的总距离最短
+        int best = INF;
+        int last = -1;
+        for (int j = 0; j < k; j++) {
+            int total = add(dp[full * k + j], endCost[j]);
+            if (total < best) {
+                best = total;
+                last = j;
+            }
+        }
+        if (last < 0) {
+            bound.offerLowerBound(INF);
+            return null;
+        }
+        bound.offerUpperBound(best);
+        bound.offerLowerBound(best);
+        
+        // 反推：在前一个集合中找到使等式dp[S][j] = dp[S - j][i] + cost[i][j]成立的景点i
+        int[] order = new int[k];
+        int mask = full;
+        for (int position = k - 1; position >= 0; position--) {
+            order[position] = last;
+            int value = dp[mask * k + last];
+            mask &= ~(1 << last);
+            if (mask == 0) {
+                break;
+            }
+            
+            for (int i = 0; i < k; i++) {
+                if ((mask & (1 << i)) != 0 && add(dp[mask * k + i], cost[i * k + last]) == value) {
+                    last = i;
+                    break;
+                }
+            }
+        }
+        return order;
+    }
+    
+    /**
+     * 计算一个集合的所有dp值，只读取少一个景点的集合，因此同一层的集合可以并行计算
+     * @param mask 景点集合
+     * @param k 景点数
+     * @param dp dp表
+     * @param cost 景点之间的距离
+     */
+    private static void relax(int mask, int k, int[] dp, int[] cost) {
+        for (int j = 0; j < k; j++) {
+            if ((mask & (1 << j)) == 0) {
+                continue;
+            }
+            
+            int previous = mask & ~(1 << j);
+            int base = previous * k;
+            int best = INF;
+            for (int rest = previous; rest != 0; rest &= rest - 1) {
+                int i = Integer.numberOfTrailingZeros(rest);
+                int candidate = add(dp[base + i], cost[i * k + j]);
+                if (candidate < best) {
+                    best = candidate;
+                }
+            }
+            dp[mask * k + j] = best;
+        }
+    }
+    
+    /**
+     * 将0..2^k-1的所有集合按元素个数分组
+     * @param k 景点数
+     * @return 第p组为所有恰有p个景点的集合
+     */
+    private static int[][] layersByPopcount(int k) {
+        int[] counts = new int[k + 1];
+        for (int mask = 0; mask < (1 << k); mask++) {
+            counts[Integer.bitCount(mask)]++;
+        }
+        
+        int[][] layers = new int[k + 1][];
+        for (int size = 0; size <= k; size++) {
+            layers[size] = new int[counts[size]];
+            counts[size] = 0;
+        }
+        for (int mask = 0; mask < (1 << k); mask++) {
+            int size = Integer.bitCount(mask);
+            layers[size][counts[size]++] = mask;
+        }
+        return layers;
+    }
+    
+    /**
+     * 两个距离相加，任一个不可达时结果也不可达
+     */
+    private static int add(int a, int b) {
+        return a == INF || b == INF ? INF : a + b;
+    }
+}
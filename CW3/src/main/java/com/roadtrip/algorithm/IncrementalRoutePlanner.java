@@ -0,0 +1,445 @@
+package com.roadtrip.algorithm;
+
+import com.roadtrip.model.Attraction;
+import com.roadtrip.model.City;
+import com.roadtrip.model.Graph;
+
+import java.util.*;
+
+/**
+ * 增量路线规划：保留上一次的访问顺序和已算出的各段距离，逐个增删景点时只做局部调整
+ * 初始状态可以直接取自RouteOptimizer已经算出的路线（距离矩阵和访问顺序），不必重新求解
+ * 
+ * 每个景点城市保存一行从它出发的最短路径树，覆盖它加入时已有的起点、终点和其他景点城市。
+ * 道路是双向的，任意两个城市之间的距离和路线可以从后加入的那个城市的行中取得，因此
+ * 新增一个景点城市只需要一次搜索，删除一个景点城市不需要搜索。
+ * 取出的距离存入按槽位编号的对称距离表，路线也是槽位数组，修改路线时不需要查找哈希表。
+ * 新景点按最便宜插入放到路线中，删除的景点直接从路线中摘除，之后只对变化处附近的城市做局部修复：
+ * 把城市移到更好的位置（Or-opt），或者翻转一段路线消除交叉（2-opt）
+ */
+public class IncrementalRoutePlanner {
+    private static final int REPAIR_ROUNDS = 4; // 局部修复最多处理的城市数为景点城市数的这么多倍
+    private static final int START = 0; // 起点的槽位
+    private static final int END = 1; // 终点的槽位
+    
+    private final DijkstraAlgorithm dijkstra;
+    private final City startCity;
+    private final City endCity;
+    private final List<Attraction> attractions = new ArrayList<>();
+    private final Map<City, Integer> attractionCounts = new LinkedHashMap<>(); // 景点城市 -> 该城市的景点数
+    
+    // 槽位：起点和终点固定为0和1（即使是同一个城市），景点城市各占一个槽位，移除后回收
+    private final List<City> slotCities = new ArrayList<>();
+    private final Map<City, Integer> slots = new HashMap<>(); // 景点城市 -> 槽位，不含起点和终点
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int capacity;
+    private int[] distances; // distances[a * capacity + b]，对称
+    private Row[] rows; // 每个槽位的最短路径树，用于展开路线
+    
+    private int[] tour; // 景点城市槽位的访问顺序，不含起点和终点
+    private int size;
+    
+    /**
+     * 构造函数，初始访问顺序由给定的策略求出
+     * @param graph 城市路网图
+     * @param startCity 起点城市
+     * @param endCity 终点城市
+     * @param attractions 初始的景点列表
+     * @param strategy 求初始访问顺序的策略
+     */
+    public IncrementalRoutePlanner(Graph graph, City startCity, City endCity,
+                                   List<Attraction> attractions, TourStrategy strategy) {
+        this(graph, attractions, new RouteOptimizer(graph).stopMatrix(startCity, endCity, attractions), strategy);
+    }
+    
+    /**
+     * 构造函数，以已经规划好的路线为初始状态，沿用它的距离矩阵和访问顺序
+     * @param graph 城市路网图，必须是计算这条路线时使用的图
+     * @param seed 已经规划好的路线
+     */
+    public IncrementalRoutePlanner(Graph graph, RouteOptimizer.PlannedRoute seed) {
+        this(graph, seed.getAttractions(), seed.getMatrix(), matrix -> seed.getOrder());
+    }
+    
+    /**
+     * 由距离矩阵和求访问顺序的策略建立初始状态
+     * @param matrix 距离矩阵，景点城市的顺序与景点列表中首次出现的顺序相同，格式见TourStrategy
+     */
+    private IncrementalRoutePlanner(Graph graph, List<Attraction> attractions, DistanceMatrix matrix,
+                                    TourStrategy strategy) {
+        this.dijkstra = new DijkstraAlgorithm(graph);
+        this.startCity = matrix.getSources().get(0);
+        this.endCity = matrix.getTargets().get(matrix.getTargets().size() - 1);
+        for (Attraction attraction : attractions) {
+            this.attractions.add(attraction);
+            attractionCounts.merge(attraction.getLocation(), 1, Integer::sum);
+        }
+        List<City> stops = new ArrayList<>(attractionCounts.keySet());
+        int k = stops.size();
+        
+        capacity = Math.max(16, Integer.highestOneBit(k + 2) * 2);
+        distances = new int[capacity * capacity];
+        rows = new Row[capacity];
+        slotCities.add(startCity);
+        slotCities.add(endCity);
+        int[] stopSlots = new int[k];
+        for (int i = 0; i < k; i++) {
+            stopSlots[i] = allocate(stops.get(i));
+        }
+        
+        // 与RouteOptimizer相同的矩阵：行为 [起点, 景点城市]，列为 [景点城市, 终点]
+        Map<City, Integer> columns = columnIndex(matrix.getTargets());
+        rows[START] = new Row(matrix, 0, columns);
+        setDistance(START, END, matrix.getDistance(0, k));
+        for (int j = 0; j < k; j++) {
+            setDistance(START, stopSlots[j], matrix.getDistance(0, j));
+        }
+        for (int i = 0; i < k; i++) {
+            rows[stopSlots[i]] = new Row(matrix, i + 1, columns);
+            setDistance(stopSlots[i], END, matrix.getDistance(i + 1, k));
+            for (int j = 0; j < k; j++) {
+                if (i != j) {
+                    setDistance(stopSlots[i], stopSlots[j], matrix.getDistance(i + 1, j));
+                }
+            }
+        }
+        
+        tour = new int[capacity];
+        int[] order = k == 0 ? null : strategy.order(matrix);
+        for (int i = 0; i < k; i++) {
+            tour[size++] = stopSlots[order == null ? i : order[i]];
+        }
+    }
+    
+    /**
+     * 添加一个景点
+     * 所在城市已在路线中时路线不变；否则做一次搜索算出新城市到其他城市的距离，
+     * 插入到使路线增加最少的位置，再在插入处附近做局部修复
+     * @param attraction 景点
+     * @return 是否添加成功，景点已在列表中时返回false
+     */
+    public boolean addAttraction(Attraction attraction) {
+        if (attractions.contains(attraction)) {
+            return false;
+        }
+        attractions.add(attraction);
+        City city = attraction.getLocation();
+        if (attractionCounts.merge(city, 1, Integer::sum) > 1) {
+            return true;
+        }
+        
+        // 一次搜索得到新城市到起点、终点和当前所有景点城市的距离
+        int slot = allocate(city);
+        List<City> targets = new ArrayList<>(size + 2);
+        targets.add(startCity);
+        targets.add(endCity);
+        for (int p = 0; p < size; p++) {
+            targets.add(slotCities.get(tour[p]));
+        }
+        DistanceMatrix matrix = dijkstra.distanceMatrix(List.of(city), targets);
+        rows[slot] = new Row(matrix, 0, columnIndex(targets));
+        setDistance(slot, START, matrix.getDistance(0, 0));
+        setDistance(slot, END, matrix.getDistance(0, 1));
+        for (int p = 0; p < size; p++) {
+            setDistance(slot, tour[p], matrix.getDistance(0, p + 2));
+        }
+        
+        // 最便宜插入：位置p表示插在tour[p - 1]和tour[p]之间
+        int bestPosition = 0;
+        long bestIncrease = Long.MAX_VALUE;
+        for (int p = 0; p <= size; p++) {
+            int previous = slotAt(p - 1);
+            int next = slotAt(p);
+            long increase = cost(previous, slot) + cost(slot, next) - cost(previous, next);
+            if (increase < bestIncrease) {
+                bestIncrease = increase;
+                bestPosition = p;
+            }
+        }
+        insert(bestPosition, slot);
+        
+        repair(slotAt(bestPosition - 1), slot, slotAt(bestPosition + 1));
+        return true;
+    }
+    
+    /**
+     * 移除一个景点
+     * 所在城市还有其他景点时路线不变；否则把城市从路线中摘除，再修复前后两个城市附近的顺序
+     * @param attraction 景点
+     * @return 是否移除成功，景点不在列表中时返回false
+     */
+    public boolean removeAttraction(Attraction attraction) {
+        if (!attractions.remove(attraction)) {
+            return false;
+        }
+        City city = attraction.getLocation();
+        if (attractionCounts.merge(city, -1, Integer::sum) > 0) {
+            return true;
+        }
+        attractionCounts.remove(city);
+        
+        int slot = slots.get(city);
+        int position = indexOf(slot);
+        delete(position);
+        slots.remove(city);
+        slotCities.set(slot, null);
+        rows[slot] = null;
+        freeSlots.push(slot);
+        
+        repair(slotAt(position - 1), slotAt(position));
+        return true;
+    }
+    
+    /**
+     * 获取当前路线
+     * @return 路线结果，存在不可达的路段时返回null
+     */
+    public RouteOptimizer.RouteResult getRoute() {
+        List<City> fullPath = new ArrayList<>();
+        int totalDistance = 0;
+        int current = START;
+        for (int p = 0; p <= size; p++) {
+            int next = slotAt(p);
+            List<City> segment = path(current, next);
+            if (segment == null) {
+                return null;
+            }
+            fullPath.addAll(fullPath.isEmpty() ? segment : segment.subList(1, segment.size()));
+            totalDistance += distances[current * capacity + next];
+            current = next;
+        }
+        return new RouteOptimizer.RouteResult(fullPath, totalDistance);
+    }
+    
+    /**
+     * 获取当前的景点列表
+     * @return 景点列表（按添加顺序）
+     */
+    public List<Attraction> getAttractions() {
+        return Collections.unmodifiableList(attractions);
+    }
+    
+    /**
+     * 对给定城市附近做局部修复，每个城市先尝试Or-opt再尝试2-opt，有改进时相关城市重新检查
+     * @param slots 需要检查的城市槽位，起点和终点会被忽略
+     */
+    private void repair(int... slots) {
+        Deque<Integer> queue = new ArrayDeque<>();
+        boolean[] queued = new boolean[capacity];
+        for (int slot : slots) {
+            enqueue(queue, queued, slot);
+        }
+        
+        int limit = REPAIR_ROUNDS * (size + 1);
+        for (int processed = 0; !queue.isEmpty() && processed < limit; processed++) {
+            int slot = queue.poll();
+            queued[slot] = false;
+            int position = indexOf(slot);
+            if (position < 0) {
+                continue;
+            }
+            
+            int[] changed = relocate(position);
+            if (changed == null) {
+                changed = twoOpt(position);
+            }
+            if (changed != null) {
+                for (int other : changed) {
+                    enqueue(queue, queued, other);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Or-opt：把位置p的城市移到使路线最短的位置
+     * @param p 城市在tour中的位置
+     * @return 端点发生变化的城市槽位，没有改进时返回null
+     */
+    private int[] relocate(int p) {
+        int slot = tour[p];
+        int previous = slotAt(p - 1);
+        int next = slotAt(p + 1);
+        long removeGain = cost(previous, slot) + cost(slot, next) - cost(previous, next);
+        
+        // 摘除后的位置q表示插在（摘除后的）tour[q - 1]和tour[q]之间
+        delete(p);
+        int bestPosition = p;
+        long bestIncrease = removeGain;
+        for (int q = 0; q <= size; q++) {
+            int left = slotAt(q - 1);
+            int right = slotAt(q);
+            long increase = cost(left, slot) + cost(slot, right) - cost(left, right);
+            if (increase < bestIncrease) {
+                bestIncrease = increase;
+                bestPosition = q;
+            }
+        }
+        insert(bestPosition, slot);
+        if (bestPosition == p) {
+            return null;
+        }
+        return new int[] {previous, next, slot, slotAt(bestPosition - 1), slotAt(bestPosition + 1)};
+    }
+    
+    /**
+     * 2-opt：删去位置p的城市与其一侧邻居之间的边和另一条边，翻转中间一段
+     * @param p 城市在tour中的位置
+     * @return 端点发生变化的城市槽位，没有改进时返回null
+     */
+    private int[] twoOpt(int p) {
+        // 路线位置：-1为起点，size为终点；删去 (a, a后继) 和 (c, c后继)，翻转 a后继..c
+        for (int a = p - 1; a <= p; a++) {
+            for (int c = -1; c < size; c++) {
+                if (Math.abs(c - a) < 2) {
+                    continue;
+                }
+                int from = Math.min(a, c) + 1;
+                int to = Math.max(a, c);
+                int before = slotAt(from - 1);
+                int after = slotAt(to + 1);
+                long gain = cost(before, tour[from]) + cost(tour[to], after)
+                        - cost(before, tour[to]) - cost(tour[from], after);
+                if (gain > 0) {
+                    for (int i = from, j = to; i < j; i++, j--) {
+                        int swap = tour[i];
+                        tour[i] = tour[j];
+                        tour[j] = swap;
+                    }
+                    return new int[] {before, after, tour[from], tour[to]};
+                }
+            }
+        }
+        return null;
+    }
+    
+    private void enqueue(Deque<Integer> queue, boolean[] queued, int slot) {
+        if (slot != START && slot != END && !queued[slot]) {
+            queued[slot] = true;
+            queue.add(slot);
+        }
+    }
+    
+    /**
+     * 路线中第p个位置的城市槽位，-1为起点，size为终点
+     */
+    private int slotAt(int p) {
+        return p < 0 ? START : p >= size ? END : tour[p];
+    }
+    
+    private int indexOf(int slot) {
+        for (int p = 0; p < size; p++) {
+            if (tour[p] == slot) {
+                return p;
+            }
+        }
+        return -1;
+    }
+    
+    private void insert(int position, int slot) {
+        System.arraycopy(tour, position, tour, position + 1, size - position);
+        tour[position] = slot;
+        size++;
+    }
+    
+    private void delete(int position) {
+        System.arraycopy(tour, position + 1, tour, position, size - position - 1);
+        size--;
+    }
+    
+    /**
+     * 两个城市之间的距离，用于比较路线长度，不可达时为很大的值
+     */
+    private long cost(int a, int b) {
+        int distance = distances[a * capacity + b];
+        return distance == DistanceMatrix.UNREACHABLE ? TourCosts.UNREACHABLE_COST : distance;
+    }
+    
+    private void setDistance(int a, int b, int distance) {
+        distances[a * capacity + b] = distance;
+        distances[b * capacity + a] = distance;
+    }
+    
+    /**
+     * 为景点城市分配一个槽位；容量不够时距离表和路线数组扩大一倍
+     */
+    private int allocate(City city) {
+        int slot;
+        if (!freeSlots.isEmpty()) {
+            slot = freeSlots.pop();
+            slotCities.set(slot, city);
+        } else {
+            slot = slotCities.size();
+            if (slot == capacity) {
+                grow();
+            }
+            slotCities.add(city);
+        }
+        slots.put(city, slot);
+        distances[slot * capacity + slot] = 0;
+        return slot;
+    }
+    
+    private void grow() {
+        int newCapacity = capacity * 2;
+        int[] newDistances = new int[newCapacity * newCapacity];
+        for (int a = 0; a < capacity; a++) {
+            System.arraycopy(distances, a * capacity, newDistances, a * newCapacity, capacity);
+        }
+        distances = newDistances;
+        rows = Arrays.copyOf(rows, newCapacity);
+        tour = Arrays.copyOf(tour, newCapacity);
+        capacity = newCapacity;
+    }
+    
+    /**
+     * 两个城市之间的最短路线，从覆盖对方的那一行中取得，行的方向与所求方向相反时翻转
+     * @return 城市列表，不可达时返回null
+     */
+    private List<City> path(int a, int b) {
+        City from = slotCities.get(a);
+        City to = slotCities.get(b);
+        if (from.equals(to)) {
+            return List.of(from);
+        }
+        Row row = rows[a];
+        Integer column = row == null ? null : row.columns.get(to);
+        if (column != null) {
+            return row.matrix.getPath(row.source, column);
+        }
+        row = rows[b];
+        List<City> reversed = row.matrix.getPath(row.source, row.columns.get(from));
+        if (reversed == null) {
+            return null;
+        }
+        List<City> segment = new ArrayList<>(reversed);
+        Collections.reverse(segment);
+        return segment;
+    }
+    
+    /**
+     * 建立城市到列下标的索引，同一城市出现多次时取第一次
+     */
+    private static Map<City, Integer> columnIndex(List<City> targets) {
+        Map<City, Integer> columns = new HashMap<>();
+        for (int j = 0; j < targets.size(); j++) {
+            columns.putIfAbsent(targets.get(j), j);
+        }
+        return columns;
+    }
+    
+    /**
+     * 从一个城市出发的一行最短路径树
+     */
+    private static final class Row {
+        private final DistanceMatrix matrix;
+        private final int source;
+        private final Map<City, Integer> columns;
+        
+        Row(DistanceMatrix matrix, int source, Map<City, Integer> columns) {
+            this.matrix = matrix;
+            this.source = source;
+            this.columns = columns;
+        }
+    }
+}
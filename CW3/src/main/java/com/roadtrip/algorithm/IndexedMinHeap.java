@@ -0,0 +1,167 @@
+package com.roadtrip.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * 以城市编号为元素、整数为键的索引小根堆（4叉堆）
+ * 每个城市在堆中至多出现一次，支持降低键值（decrease-key），
+ * 因此队列大小不超过城市数，且入队、更新都不创建对象
+ */
+final class IndexedMinHeap implements NodeQueue {
+    private static final int ARITY = 4;
+    private static final int ABSENT = -1;
+    
+    private final int[] nodes;       // 堆位置 -> 城市编号
+    private final int[] keys;        // 堆位置 -> 键，与nodes平行存放，比较时不必间接寻址
+    private final int[] positions;   // 城市编号 -> 堆位置，不在堆中为-1
+    private int size;
+    
+    /**
+     * 构造函数
+     * @param capacity 城市编号上限（不含）
+     */
+    IndexedMinHeap(int capacity) {
+        nodes = new int[capacity];
+        keys = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, ABSENT);
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    int capacity() {
+        return positions.length;
+    }
+    
+    boolean contains(int node) {
+        return positions[node] != ABSENT;
+    }
+    
+    /**
+     * 城市不在堆中时插入；已在堆中且新键更小时降低键值；否则不做任何事
+     * @param node 城市编号
+     * @param key 键
+     */
+    @Override
+    public void insertOrDecrease(int node, int key) {
+        int position = positions[node];
+        if (position == ABSENT) {
+            position = size++;
+        } else if (key >= keys[position]) {
+            return;
+        }
+        siftUp(position, node, key);
+    }
+    
+    /**
+     * 无条件设置城市的键（可升可降），城市不在堆中时插入
+     * @param node 城市编号
+     * @param key 键
+     */
+    void update(int node, int key) {
+        int position = positions[node];
+        if (position == ABSENT) {
+            siftUp(size++, node, key);
+        } else if (key < keys[position]) {
+            siftUp(position, node, key);
+        } else {
+            siftDown(position, node, key);
+        }
+    }
+    
+    /**
+     * 获取堆顶城市编号
+     * @return 城市编号
+     */
+    int peek() {
+        return nodes[0];
+    }
+    
+    /**
+     * 获取堆顶的键
+     * @return 最小键
+     */
+    @Override
+    public int peekKey() {
+        return keys[0];
+    }
+    
+    /**
+     * 弹出堆顶城市
+     * @return 城市编号
+     */
+    @Override
+    public int poll() {
+        int top = nodes[0];
+        positions[top] = ABSENT;
+        int last = --size;
+        if (last > 0) {
+            siftDown(0, nodes[last], keys[last]);
+        }
+        return top;
+    }
+    
+    /**
+     * 清空堆，只重置仍在堆中的城市，耗时与堆大小成正比
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[nodes[i]] = ABSENT;
+        }
+        size = 0;
+    }
+    
+    private void siftUp(int position, int node, int key) {
+        while (position > 0) {
+            int parent = (position - 1) / ARITY;
+            if (keys[parent] <= key) {
+                break;
+            }
+            move(parent, position);
+            position = parent;
+        }
+        place(position, node, key);
+    }
+    
+    private void siftDown(int position, int node, int key) {
+        while (true) {
+            int first = position * ARITY + 1;
+            if (first >= size) {
+                break;
+            }
+            // 在最多4个子节点中找出键最小的一个
+            int child = first;
+            int end = Math.min(first + ARITY, size);
+            for (int c = first + 1; c < end; c++) {
+                if (keys[c] < keys[child]) {
+                    child = c;
+                }
+            }
+            if (keys[child] >= key) {
+                break;
+            }
+            move(child, position);
+            position = child;
+        }
+        place(position, node, key);
+    }
+    
+    private void move(int from, int to) {
+        nodes[to] = nodes[from];
+        keys[to] = keys[from];
+        positions[nodes[to]] = to;
+    }
+    
+    private void place(int position, int node, int key) {
+        nodes[position] = node;
+        keys[position] = key;
+        positions[node] = position;
+    }
+}
@@ -0,0 +1,132 @@
+package com.roadtrip.algorithm;
+
+import com.roadtrip.model.CompactGraph;
+
+import java.util.Arrays;
+
+/**
+ * ALT（A*、地标、三角不等式）搜索使用的地标距离表
+ * 预先计算少量地标城市到所有城市的最短距离，由三角不等式
+ * |d(L, t) - d(L, v)| <= d(v, t) 得到不依赖经纬度的剩余距离下界
+ */
+final class LandmarkIndex implements DistanceEstimator {
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    
+    private final int landmarkCount;
+    private final int[] landmarks;     // 地标城市编号
+    private final int[] distances;     // 按城市优先存放：distances[v * landmarkCount + i] = d(地标i, v)
+    
+    private LandmarkIndex(int[] landmarks, int[] distances) {
+        this.landmarkCount = landmarks.length;
+        this.landmarks = landmarks;
+        this.distances = distances;
+    }
+    
+    /**
+     * 用最远点策略选取地标并计算距离表
+     * 第一个地标取距任意起点最远的城市，之后每次选取距已有地标最近距离最大的城市。
+     * 所有城市都已是地标（最远的城市到地标的距离为0）时停止，不会重复选取同一个城市
+     * @param compact 图的紧凑快照
+     * @param count 地标数量上限
+     * @return 地标距离表
+     */
+    static LandmarkIndex build(CompactGraph compact, int count) {
+        int n = compact.getCityCount();
+        count = Math.min(count, n);
+        int[] landmarks = new int[count];
+        int[][] fromLandmarks = new int[count][];
+        
+        // 每个城市到已选地标的最近距离
+        int[] nearest = new int[n];
+        Arrays.fill(nearest, UNREACHABLE);
+        
+        int selected = 0;
+        int candidate = n > 0 ? farthestFrom(distancesFrom(compact, 0)) : 0;
+        while (selected < count && nearest[candidate] > 0) {
+            landmarks[selected] = candidate;
+            int[] fromLandmark = distancesFrom(compact, candidate);
+            fromLandmarks[selected++] = fromLandmark;
+            for (int v = 0; v < n; v++) {
+                nearest[v] = Math.min(nearest[v], fromLandmark[v]);
+            }
+            
+            // 下一个地标：离现有地标最远的城市；不可达的城市（其他连通分量）优先，以覆盖所有分量
+            candidate = farthestFrom(nearest);
+        }
+        
+        int[] table = new int[n * selected];
+        for (int i = 0; i < selected; i++) {
+            for (int v = 0; v < n; v++) {
+                table[v * selected + i] = fromLandmarks[i][v];
+            }
+        }
+        return new LandmarkIndex(Arrays.copyOf(landmarks, selected), table);
+    }
+    
+    /**
+     * 获取地标城市编号
+     * @return 地标城市编号数组
+     */
+    int[] getLandmarks() {
+        return landmarks.clone();
+    }
+    
+    /**
+     * 所有地标给出的下界中取最大值
+     */
+    @Override
+    public int estimate(int u, int target) {
+        int best = 0;
+        int uBase = u * landmarkCount;
+        int targetBase = target * landmarkCount;
+        for (int i = 0; i < landmarkCount; i++) {
+            int du = distances[uBase + i];
+            int dt = distances[targetBase + i];
+            // 地标到其中一个城市不可达时，该地标不提供信息
+            if (du != UNREACHABLE && dt != UNREACHABLE) {
+                int bound = Math.abs(dt - du);
+                if (bound > best) {
+                    best = bound;
+                }
+            }
+        }
+        return best;
+    }
+    
+    private static int farthestFrom(int[] distances) {
+        int farthest = 0;
+        for (int v = 1; v < distances.length; v++) {
+            if (distances[v] > distances[farthest]) {
+                farthest = v;
+            }
+        }
+        return farthest;
+    }
+    
+    /**
+     * 计算从source到所有城市的最短距离（单源Dijkstra）
+     */
+    private static int[] distancesFrom(CompactGraph compact, int source) {
+        int[] distances = new int[compact.getCityCount()];
+        Arrays.fill(distances, UNREACHABLE);
+        distances[source] = 0;
+        
+        IndexedMinHeap queue = new IndexedMinHeap(distances.length);
+        queue.insertOrDecrease(source, 0);
+        
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            int currentDistance = distances[u];
+            for (int e = compact.firstEdge(u), last = compact.endEdge(u); e < last; e++) {
+                int v = compact.target(e);
+                int newDistance = currentDistance + compact.weight(e);
+                if (newDistance < distances[v]) {
+                    distances[v] = newDistance;
+                    queue.insertOrDecrease(v, newDistance);
+                }
+            }
+        }
+        
+        return distances;
+    }
+}
@@ -0,0 +1,363 @@
+package com.roadtrip.algorithm;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * Lin-Kernighan风格的访问顺序优化，用于数百到上千个景点
+ * 
+ * 每次改进从城市t1出发：删去边 (t1, t2)，接上 (t2, t3)，再删去 (t3, t4) 并用 (t4, t1) 闭合，
+ * 这相当于一次2-opt翻转，路线始终合法。之后把刚加上的 (t4, t1) 当作下一次要删的边继续加深，
+ * 形成一串k-opt移动；只要累计收益为正就继续，最后保留收益最大的那一步，其余翻转撤销。
+ * t3只从t2最近的若干景点中选，选择时向前多看一步，取 c(t3, t4) - c(t2, t3) 最大者。
+ * 路线长度随每次移动增量更新，不需要重新累加。
+ * 
+ * 收敛后在时间预算内做迭代：对路线的一小段做double-bridge扰动，只激活被扰动的城市重新优化，
+ * 结果变短则接受，否则恢复。起点和终点始终固定在两端
+ */
+public class LinKernighanTour implements TourStrategy {
+    /** 默认的时间预算（毫秒） */
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 1000;
+    
+    private static final int NEIGHBORS = 8; // 候选t3的邻居表大小
+    private static final int MAX_DEPTH = 50; // 一串移动的最大步数
+    private static final int KICKS_PER_STOP = 20; // 扰动次数上限为景点数的这么多倍
+    private static final int KICK_SEGMENT = 50; // double-bridge扰动中每段的最大长度
+    private static final long SEED = 42; // 固定随机种子，同样的输入得到同样的路线
+    
+    private final TourStrategy construction;
+    private final long timeBudgetMillis;
+    
+    /**
+     * 构造函数，初始顺序由最近邻加局部搜索给出，使用默认时间预算
+     */
+    public LinKernighanTour() {
+        this(new LocalSearchTour(new NearestNeighborTour()), DEFAULT_TIME_BUDGET_MILLIS);
+    }
+    
+    /**
+     * 构造函数
+     * @param construction 给出初始访问顺序的构造算法
+     * @param timeBudgetMillis 迭代扰动的时间预算（毫秒），为0时只做一次收敛
+     */
+    public LinKernighanTour(TourStrategy construction, long timeBudgetMillis) {
+        this.construction = construction;
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+    
+    @Override
+    public int[] order(DistanceMatrix matrix) {
+        return order(matrix, new TourBound());
+    }
+    
+    /**
+     * 每次得到更短的路线时报告给bound，bound被取消时停止扰动，返回当前结果
+     */
+    @Override
+    public int[] order(DistanceMatrix matrix, TourBound bound) {
+        int[] order = construction.order(matrix, bound);
+        if (order == null || order.length < 3) {
+            return order;
+        }
+        
+        long deadline = System.nanoTime() + timeBudgetMillis * 1_000_000L;
+        Search search = new Search(matrix, order, deadline, bound);
+        search.run();
+        int[] improved = search.order();
+        return TourCosts.length(matrix, improved) <= TourCosts.length(matrix, order) ? improved : order;
+    }
+    
+    /**
+     * 一次优化的状态，城市编号同TourCosts；tour[p]为路线第p个位置的城市
+     */
+    private static final class Search {
+        private final DistanceMatrix matrix;
+        private final TourCosts costs;
+        private final TourBound bound;
+        private final int n;
+        private final int[][] neighbors;
+        private final int[] tour;
+        private final int[] position; // 城市 -> 在tour中的位置
+        private final Deque<Integer> active = new ArrayDeque<>();
+        private final boolean[] queued; // 为false即don't-look位已置位
+        private final long deadline;
+        private final Random random = new Random(SEED);
+        private long length; // 当前路线按对称距离的总长度
+        
+        // 一串移动中翻转过的区间，用于撤销
+        private final int[] flipFrom = new int[MAX_DEPTH];
+        private final int[] flipTo = new int[MAX_DEPTH];
+        // 一串移动中加上的边，不允许在同一串中再删去
+        private final int[] addedA = new int[MAX_DEPTH];
+        private final int[] addedB = new int[MAX_DEPTH];
+        
+        Search(DistanceMatrix matrix, int[] order, long deadline, TourBound bound) {
+            this.matrix = matrix;
+            this.costs = new TourCosts(matrix);
+            this.deadline = deadline;
+            this.bound = bound;
+            n = costs.size();
+            neighbors = costs.nearestStops(NEIGHBORS);
+            
+            tour = new int[n];
+            position = new int[n];
+            tour[n - 1] = n - 1;
+            for (int p = 1; p < n - 1; p++) {
+                tour[p] = order[p - 1] + 1;
+            }
+            for (int p = 0; p < n; p++) {
+                position[tour[p]] = p;
+                if (p > 0) {
+                    length += costs.cost(tour[p - 1], tour[p]);
+                }
+            }
+            
+            queued = new boolean[n];
+            for (int city = 0; city < n; city++) {
+                activate(city);
+            }
+        }
+        
+        /**
+         * 先收敛到局部最优，再在时间预算内迭代扰动
+         */
+        void run() {
+            optimize();
+            report();
+            
+            int[] best = tour.clone();
+            long bestLength = length;
+            long maxKicks = (long) KICKS_PER_STOP * (n - 2);
+            for (long kick = 0; kick < maxKicks && !bound.isCancelled() && System.nanoTime() - deadline < 0; kick++) {
+                doubleBridge();
+                optimize();
+                
+                if (length < bestLength) {
+                    System.arraycopy(tour, 0, best, 0, n);
+                    bestLength = length;
+                    report();
+                } else {
+                    System.arraycopy(best, 0, tour, 0, n);
+                    for (int p = 0; p < n; p++) {
+                        position[tour[p]] = p;
+                    }
+                    length = bestLength;
+                }
+            }
+        }
+        
+        /**
+         * @return 当前的景点访问顺序
+         */
+        int[] order() {
+            int[] order = new int[n - 2];
+            for (int p = 1; p < n - 1; p++) {
+                order[p - 1] = tour[p] - 1;
+            }
+            return order;
+        }
+        
+        /**
+         * 把当前路线按矩阵中的有向距离计算的长度报告给共享的界
+         */
+        private void report() {
+            long directed = TourCosts.length(matrix, order());
+            if (directed < DistanceMatrix.UNREACHABLE) {
+                bound.offerUpperBound((int) directed);
+            }
+        }
+        
+        /**
+         * 从活跃城市出发反复尝试改进，直到所有城市的don't-look位都置位
+         */
+        private void optimize() {
+            while (!active.isEmpty()) {
+                int city = active.poll();
+                queued[city] = false;
+                if (improveFrom(city)) {
+                    activate(city);
+                }
+            }
+        }
+        
+        /**
+         * 以t1为起点尝试一串移动，t2分别取t1在路线上的两侧
+         * @param t1 起点城市
+         * @return 是否改进了路线
+         */
+        private boolean improveFrom(int t1) {
+            for (int side = -1; side <= 1; side += 2) {
+                int p = position[t1] + side;
+                if (p < 0 || p >= n) {
+                    continue;
+                }
+                if (chain(t1, tour[p])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * 从删去边 (t1, t2) 开始加深一串移动，保留累计收益最大的前缀
+         * @param t1 起点城市
+         * @param t2 t1在路线上的一个邻居
+         * @return 是否改进了路线
+         */
+        private boolean chain(int t1, int t2) {
+            long gain = costs.cost(t1, t2); // 删去的边减去加上的边（不含闭合边）
+            long bestGain = 0;
+            int bestDepth = 0;
+            int depth = 0;
+            
+            while (depth < MAX_DEPTH) {
+                int direction = position[t2] - position[t1]; // t2在t1的哪一侧
+                
+                // 选择t3：要求 gain - c(t2, t3) > 0，并向前看一步取 c(t3, t4) - c(t2, t3) 最大者
+                int bestT3 = -1;
+                int bestT4 = -1;
+                long bestScore = Long.MIN_VALUE;
+                for (int t3 : neighbors[t2]) {
+                    long partial = gain - costs.cost(t2, t3);
+                    if (partial <= 0) {
+                        break; // 邻居按距离排序，后面的更远
+                    }
+                    
+                    // t4是t3在与t2相反一侧的邻居，这样 (t4, t1) 才能闭合成一条路线
+                    int p4 = position[t3] - direction;
+                    if (t3 == t1 || p4 < 0 || p4 >= n) {
+                        continue;
+                    }
+                    int t4 = tour[p4];
+                    if (t4 == t2 || wasAdded(t3, t4, depth)) {
+                        continue;
+                    }
+                    
+                    long score = costs.cost(t3, t4) - costs.cost(t2, t3);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestT3 = t3;
+                        bestT4 = t4;
+                    }
+                }
+                if (bestT3 < 0) {
+                    break;
+                }
+                
+                flip(t1, t2, bestT3, bestT4, depth);
+                addedA[depth] = t2;
+                addedB[depth] = bestT3;
+                depth++;
+                gain += bestScore;
+                
+                // 用 (t4, t1) 闭合时的实际收益
+                long closed = gain - costs.cost(bestT4, t1);
+                if (closed > bestGain) {
+                    bestGain = closed;
+                    bestDepth = depth;
+                }
+                t2 = bestT4;
+            }
+            
+            // 撤销收益最大的前缀之后的翻转
+            for (int i = depth - 1; i >= bestDepth; i--) {
+                reverse(flipFrom[i], flipTo[i]);
+            }
+            if (bestGain <= 0) {
+                return false;
+            }
+            
+            // 端点发生变化的城市重新检查：每步的t2、t3，以及t1现在的两个邻居
+            length -= bestGain;
+            for (int i = 0; i < bestDepth; i++) {
+                activate(addedA[i], addedB[i]);
+            }
+            int p1 = position[t1];
+            activate(tour[Math.max(p1 - 1, 0)], tour[Math.min(p1 + 1, n - 1)]);
+            return true;
+        }
+        
+        /**
+         * 检查边 (a, b) 是否在这一串移动中加上过
+         */
+        private boolean wasAdded(int a, int b, int depth) {
+            for (int i = 0; i < depth; i++) {
+                if ((addedA[i] == a && addedB[i] == b) || (addedA[i] == b && addedB[i] == a)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * 执行2-opt翻转：删去 (t1, t2) 和 (t3, t4)，加上 (t2, t3) 和 (t4, t1)。
+         * 两条被删的边把路线分成三段，翻转中间一段，起点和终点不动
+         */
+        private void flip(int t1, int t2, int t3, int t4, int depth) {
+            int first = Math.min(position[t1], position[t2]);
+            int second = Math.min(position[t3], position[t4]);
+            int from = Math.min(first, second) + 1;
+            int to = Math.max(first, second);
+            reverse(from, to);
+            flipFrom[depth] = from;
+            flipTo[depth] = to;
+        }
+        
+        /**
+         * 翻转路线中 from..to 位置的城市
+         */
+        private void reverse(int from, int to) {
+            for (int i = from, j = to; i < j; i++, j--) {
+                int city = tour[i];
+                tour[i] = tour[j];
+                tour[j] = city;
+                position[tour[i]] = i;
+                position[tour[j]] = j;
+            }
+        }
+        
+        /**
+         * double-bridge扰动：把路线 A B C D 改为 A C B D，B和C是相邻的两小段。
+         * 这种移动无法由少量翻转得到，能让搜索跳出当前的局部最优
+         */
+        private void doubleBridge() {
+            int interior = n - 2;
+            int lengthB = 1 + random.nextInt(Math.min(KICK_SEGMENT, interior - 1));
+            int lengthC = 1 + random.nextInt(Math.min(KICK_SEGMENT, interior - lengthB));
+            int b = 1 + random.nextInt(interior - lengthB - lengthC + 1); // B的起始位置
+            int c = b + lengthB; // C的起始位置
+            int d = c + lengthC; // D的起始位置
+            
+            int a = tour[b - 1];
+            int bFirst = tour[b];
+            int bLast = tour[c - 1];
+            int cFirst = tour[c];
+            int cLast = tour[d - 1];
+            int dFirst = tour[d];
+            length += costs.cost(a, cFirst) + costs.cost(cLast, bFirst) + costs.cost(bLast, dFirst)
+                    - costs.cost(a, bFirst) - costs.cost(bLast, cFirst) - costs.cost(cLast, dFirst);
+            
+            int[] segmentB = new int[lengthB];
+            System.arraycopy(tour, b, segmentB, 0, lengthB);
+            System.arraycopy(tour, c, tour, b, lengthC);
+            System.arraycopy(segmentB, 0, tour, b + lengthC, lengthB);
+            for (int p = b; p < d; p++) {
+                position[tour[p]] = p;
+            }
+            activate(a, bFirst, bLast, cFirst, cLast, dFirst);
+        }
+        
+        /**
+         * 清除城市的don't-look位，放回待检查队列
+         */
+        private void activate(int... cities) {
+            for (int city : cities) {
+                if (!queued[city]) {
+                    queued[city] = true;
+                    active.add(city);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.roadtrip.algorithm;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * 局部搜索改进阶段：在任意构造算法给出的访问顺序上反复应用2-opt和Or-opt移动，直到无法改进
+ * 
+ * 2-opt翻转一段路线，消除交叉的绕路；Or-opt把1到3个连续景点整体移到别处（可翻转）。
+ * 只尝试让城市与其最近的若干邻居相连的移动（邻居表预先计算），
+ * 并用don't-look位跳过周围没有变化的城市，每轮为O(k * 邻居数)次尝试加上移动本身的O(k)。
+ * 邻居表只在开始时建立一次，需要扫描整个距离矩阵，为O(k^2 * 邻居数)。
+ * 起点和终点的位置始终固定。
+ * 
+ * 道路是双向的，距离矩阵对称，所以翻转一段路线只改变两端的两条边。
+ * 矩阵不对称时按两个方向的和计算（见TourCosts），最后保留原顺序和改进结果中较短的一个
+ */
+public class LocalSearchTour implements TourStrategy {
+    /** 默认的邻居表大小 */
+    public static final int DEFAULT_NEIGHBORS = 10;
+    
+    private static final int MAX_SEGMENT = 3; // Or-opt移动的最长景点段
+    
+    private final TourStrategy construction;
+    private final int neighborCount;
+    
+    /**
+     * 构造函数，使用默认的邻居表大小
+     * @param construction 给出初始访问顺序的构造算法
+     */
+    public LocalSearchTour(TourStrategy construction) {
+        this(construction, DEFAULT_NEIGHBORS);
+    }
+    
+    /**
+     * 构造函数
+     * @param construction 给出初始访问顺序的构造算法
+     * @param neighborCount 每个城市的邻居表大小
+     */
+    public LocalSearchTour(TourStrategy construction, int neighborCount) {
+        if (neighborCount < 1) {
+            throw new IllegalArgumentException("邻居表大小必须为正数: " + neighborCount);
+        }
+        this.construction = construction;
+        this.neighborCount = neighborCount;
+    }
+    
+    @Override
+    public int[] order(DistanceMatrix matrix) {
+        int[] order = construction.order(matrix);
+        return order == null ? null : improve(matrix, order);
+    }
+    
+    /**
+     * 改进给定的访问顺序
+     * @param matrix 距离矩阵，格式见TourStrategy
+     * @param order 初始的景点访问顺序
+     * @return 改进后的访问顺序（新数组），路线总长度不超过原顺序
+     */
+    public int[] improve(DistanceMatrix matrix, int[] order) {
+        Search search = new Search(matrix, order, neighborCount);
+        search.run();
+        int[] improved = search.order();
+        return TourCosts.length(matrix, improved) <= TourCosts.length(matrix, order) ? improved : order.clone();
+    }
+    
+    /**
+     * 一次改进的状态
+     * 城市编号：0为起点，1..k为景点（景点j为j + 1），k + 1为终点；
+     * tour[p]为路线第p个位置的城市，起点和终点固定在两端
+     */
+    private static final class Search {
+        private final int n;
+        private final TourCosts costs;
+        private final int[][] neighbors; // 每个城市最近的若干景点，按距离排序
+        private final int[] tour;
+        private final int[] position; // 城市 -> 在tour中的位置
+        private final Deque<Integer> active = new ArrayDeque<>();
+        private final boolean[] queued; // 为false即don't-look位已置位
+        
+        Search(DistanceMatrix matrix, int[] order, int neighborCount) {
+            costs = new TourCosts(matrix);
+            n = costs.size();
+            int end = n - 1;
+            
+            tour = new int[n];
+            position = new int[n];
+            tour[end] = end;
+            for (int p = 1; p < end; p++) {
+                tour[p] = order[p - 1] + 1;
+            }
+            for (int p = 0; p < n; p++) {
+                position[tour[p]] = p;
+            }
+            neighbors = costs.nearestStops(neighborCount);
+            
+            queued = new boolean[n];
+            for (int a = 0; a < n; a++) {
+                activate(a);
+            }
+        }
+        
+        /**
+         * 反复取出活跃城市并尝试以它为端点的移动，直到所有城市的don't-look位都置位
+         */
+        void run() {
+            while (!active.isEmpty()) {
+                int city = active.poll();
+                queued[city] = false;
+                if (twoOpt(city) || orOpt(city)) {
+                    activate(city);
+                }
+            }
+        }
+        
+        /**
+         * @return 当前的景点访问顺序
+         */
+        int[] order() {
+            int[] order = new int[n - 2];
+            for (int p = 1; p < n - 1; p++) {
+                order[p - 1] = tour[p] - 1;
+            }
+            return order;
+        }
+        
+        /**
+         * 尝试一次以a为端点、新边连接a与其邻居c的2-opt移动
+         * @param a 城市
+         * @return 是否找到并执行了改进移动
+         */
+        private boolean twoOpt(int a) {
+            int i = position[a];
+            for (int c : neighbors[a]) {
+                int j = position[c];
+                
+                // 后继方向：删去 (a, a后继) 和 (c, c后继)，翻转 i + 1..j
+                if (i < j - 1 && j < n - 1) {
+                    int aNext = tour[i + 1];
+                    int cNext = tour[j + 1];
+                    long gain = cost(a, aNext) + cost(c, cNext) - cost(a, c) - cost(aNext, cNext);
+                    if (gain > 0) {
+                        reverse(i + 1, j);
+                        activate(aNext, c, cNext);
+                        return true;
+                    }
+                }
+                
+                // 前驱方向：删去 (c前驱, c) 和 (a前驱, a)，翻转 j..i - 1
+                if (0 < j && j < i - 1) {
+                    int aPrevious = tour[i - 1];
+                    int cPrevious = tour[j - 1];
+                    long gain = cost(aPrevious, a) + cost(cPrevious, c) - cost(a, c) - cost(aPrevious, cPrevious);
+                    if (gain > 0) {
+                        reverse(j, i - 1);
+                        activate(aPrevious, c, cPrevious);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * 尝试一次Or-opt移动：把以a为一端的1到3个景点移到a的某个邻居c旁边，a与c相邻
+         * @param a 城市
+         * @return 是否找到并执行了改进移动
+         */
+        private boolean orOpt(int a) {
+            int p = position[a];
+            if (p == 0 || p == n - 1) {
+                return false;
+            }
+            
+            for (int length = 1; length <= MAX_SEGMENT; length++) {
+                // a在段首或段尾，长度为1时两者相同
+                for (int side = 0; side < (length == 1 ? 1 : 2); side++) {
+                    int first = side == 0 ? p : p - length + 1;
+                    int last = first + length - 1;
+                    if (first < 1 || last > n - 2) {
+                        continue;
+                    }
+                    
+                    int previous = tour[first - 1];
+                    int next = tour[last + 1];
+                    long removeGain = cost(previous, tour[first]) + cost(tour[last], next) - cost(previous, next);
+                    if (removeGain <= 0) {
+                        continue;
+                    }
+                    
+                    for (int c : neighbors[a]) {
+                        int q = position[c];
+                        if (first <= q && q <= last) {
+                            continue;
+                        }
+                        
+                        // 插入到边 (c前驱, c) 或 (c, c后继) 中，插入位置不能与段相邻
+                        for (int x = q - 1; x <= q; x++) {
+                            if (x < 0 || x + 1 > n - 1 || (x >= first - 1 && x <= last)) {
+                                continue;
+                            }
+                            int left = tour[x];
+                            int right = tour[x + 1];
+                            
+                            // 段的方向使a与c相邻
+                            boolean reversed = c == left ? tour[first] != a : tour[last] != a;
+                            int head = reversed ? tour[last] : tour[first];
+                            int tail = reversed ? tour[first] : tour[last];
+                            long insertCost = cost(left, head) + cost(tail, right) - cost(left, right);
+                            if (removeGain - insertCost > 0) {
+                                moveSegment(first, last, x, reversed);
+                                activate(previous, next, left, right);
+                                activate(head, tail);
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+        
+        private long cost(int a, int b) {
+            return costs.cost(a, b);
+        }
+        
+        /**
+         * 翻转路线中 from..to 位置的城市
+         */
+        private void reverse(int from, int to) {
+            for (int i = from, j = to; i < j; i++, j--) {
+                int city = tour[i];
+                tour[i] = tour[j];
+                tour[j] = city;
+                position[tour[i]] = i;
+                position[tour[j]] = j;
+            }
+        }
+        
+        /**
+         * 把 first..last 位置的一段移到位置x与x + 1之间
+         * @param first 段首位置
+         * @param last 段尾位置
+         * @param x 插入边左端的位置，不在段内也不与段相邻
+         * @param reversed 是否翻转这一段
+         */
+        private void moveSegment(int first, int last, int x, boolean reversed) {
+            int length = last - first + 1;
+            int[] segment = Arrays.copyOfRange(tour, first, last + 1);
+            if (reversed) {
+                for (int i = 0, j = length - 1; i < j; i++, j--) {
+                    int city = segment[i];
+                    segment[i] = segment[j];
+                    segment[j] = city;
+                }
+            }
+            
+            int start;
+            int stop;
+            if (x < first) {
+                // 段向前移：x + 1..first - 1 整体后移
+                System.arraycopy(tour, x + 1, tour, x + 1 + length, first - x - 1);
+                System.arraycopy(segment, 0, tour, x + 1, length);
+                start = x + 1;
+                stop = last;
+            } else {
+                // 段向后移：last + 1..x 整体前移
+                System.arraycopy(tour, last + 1, tour, first, x - last);
+                System.arraycopy(segment, 0, tour, x - length + 1, length);
+                start = first;
+                stop = x;
+            }
+            for (int i = start; i <= stop; i++) {
+                position[tour[i]] = i;
+            }
+        }
+        
+        /**
+         * 清除城市的don't-look位，放回待检查队列
+         */
+        private void activate(int... cities) {
+            for (int city : cities) {
+                if (!queued[city]) {
+                    queued[city] = true;
+                    active.add(city);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.roadtrip.algorithm;
+
+/**
+ * 贪心（最近邻）访问顺序：每次选择距离当前位置最近的下一个景点
+ * 只需O(k^2)时间，但结果不保证最优
+ */
+public class NearestNeighborTour implements TourStrategy {
+    
+    @Override
+    public int[] order(DistanceMatrix matrix) {
+        int k = matrix.getTargets().size() - 1;
+        int[] order = new int[k];
+        
+        // 当前位置（矩阵中的行号），初始为起点
+        int current = 0;
+        
+        // 记录已访问的景点（列号）
+        boolean[] visited = new boolean[k];
+        
+        for (int step = 0; step < k; step++) {
+            // 找出下一个最近的景点，跳过已访问和无法到达的景点
+            int next = -1;
+            int shortestDistance = Integer.MAX_VALUE;
+            for (int j = 0; j < k; j++) {
+                if (!visited[j] && matrix.isReachable(current, j)
+                        && matrix.getDistance(current, j) < shortestDistance) {
+                    next = j;
+                    shortestDistance = matrix.getDistance(current, j);
+                }
+            }
+            
+            // 如果找不到下一个可访问的景点，路径不可行
+            if (next < 0) {
+                return null;
+            }
+            
+            // 景点j对应矩阵第j + 1行
+            order[step] = next;
+            visited[next] = true;
+            current = next + 1;
+        }
+        
+        // 最后一个景点必须能到达终点
+        return matrix.isReachable(current, k) ? order : null;
+    }
+}
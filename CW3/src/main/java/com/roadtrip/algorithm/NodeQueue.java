@@ -0,0 +1,33 @@
+package com.roadtrip.algorithm;
+
+/**
+ * 最短路径搜索使用的优先队列
+ * 元素为城市编号，键为整数距离；每个城市在队列中至多出现一次
+ */
+interface NodeQueue {
+    
+    /**
+     * 判断队列是否为空
+     * @return 队列为空返回true
+     */
+    boolean isEmpty();
+    
+    /**
+     * 城市不在队列中时插入；已在队列中且新键更小时降低键值；否则不做任何事
+     * @param node 城市编号
+     * @param key 键
+     */
+    void insertOrDecrease(int node, int key);
+    
+    /**
+     * 获取最小的键，队列不能为空
+     * @return 最小键
+     */
+    int peekKey();
+    
+    /**
+     * 弹出键最小的城市，队列不能为空
+     * @return 城市编号
+     */
+    int poll();
+}
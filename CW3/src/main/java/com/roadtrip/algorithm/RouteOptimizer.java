@@ -2,9 +2,14 @@ package com.roadtrip.algorithm;
 
 import com.roadtrip.model.Attraction;
 import com.roadtrip.model.City;
+import com.roadtrip.model.CompactGraph;
 import com.roadtrip.model.Graph;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * 路线优化器，用于计算访问多个景点的最短路径
@@ -12,19 +17,41 @@ import java.util.*;
 public class RouteOptimizer {
     private final Graph graph;
     private final DijkstraAlgorithm dijkstra;
+    private final TourStrategy tourStrategy;
     
     /**
      * 构造函数
      * @param graph 城市路网图
      */
     public RouteOptimizer(Graph graph) {
+        this(graph, DijkstraAlgorithm.SearchMode.DIJKSTRA);
+    }
+    
+    /**
+     * 构造函数
+     * @param graph 城市路网图
+     * @param searchMode 计算每段最短路径时使用的搜索模式
+     */
+    public RouteOptimizer(Graph graph, DijkstraAlgorithm.SearchMode searchMode) {
+        this(graph, searchMode, new NearestNeighborTour());
+    }
+    
+    /**
+     * 构造函数
+     * @param graph 城市路网图
+     * @param searchMode 计算每段最短路径时使用的搜索模式
+     * @param tourStrategy 决定景点访问顺序的策略
+     */
+    public RouteOptimizer(Graph graph, DijkstraAlgorithm.SearchMode searchMode, TourStrategy tourStrategy) {
         this.graph = graph;
-        this.dijkstra = new DijkstraAlgorithm(graph);
+        this.dijkstra = new DijkstraAlgorithm(graph, searchMode);
+        this.tourStrategy = tourStrategy;
     }
     
     /**
      * 计算从起点出发，访问所有景点后到达终点的最短路径
-     * 使用贪心算法：每次选择距离当前位置最近的下一个景点
+     * 景点的访问顺序由构造时指定的策略决定，默认为贪心算法。
+     * 各段距离事先由距离矩阵一次算出，k个景点城市只需要k + 1次搜索
      * 
      * @param startCity 起点城市
      * @param endCity 终点城市
@@ -33,106 +60,268 @@ public class RouteOptimizer {
      */
     public RouteResult findOptimalRoute(City startCity, City endCity, List<Attraction> attractions) {
         // 如果起点或终点不在图中，返回null
-        if (!graph.containsCity(startCity) || !graph.containsCity(endCity)) {
+        if (!containsCities(startCity, endCity)) {
             return null;
         }
         
         // 如果没有景点需要访问，直接计算起点到终点的最短路径
         if (attractions.isEmpty()) {
-            DijkstraAlgorithm.ShortestPathResult result = dijkstra.findShortestPath(startCity, endCity);
-            return result == null ? null : new RouteResult(result.getPath(), result.getDistance());
+            return directRoute(startCity, endCity);
         }
         
-        // 城市到城市的距离缓存，避免重复计算
-        Map<String, DijkstraAlgorithm.ShortestPathResult> distanceCache = new HashMap<>();
+        DistanceMatrix matrix = stopMatrix(startCity, endCity, attractions);
+        int[] order = tourStrategy.order(matrix);
+        return order == null ? null : assemble(matrix, order);
+    }
+    
+    /**
+     * 在时间预算内逐步改进路线
+     * 先用贪心算法得到一条路线，之后在后台线程中依次用局部搜索和更强的算法改进：
+     * 景点不超过Held-Karp的上限时求最优解，不超过分支定界的上限时用分支定界，更多时用Lin-Kernighan。
+     * 第一条路线在启动后台线程之前传给回调，之后每找到一条比上次更短的路线就再调用一次，
+     * 所以回调按总距离严格递减的顺序收到路线。预算用完时cancellation被取消，
+     * 取消后各算法尽早停止，得到的结果不再发布。
+     * 贪心算法找不到路线时，改为同步使用构造时指定的策略，不启动后台改进。
+     * 每条路线都带有距离矩阵和访问顺序，可以直接作为IncrementalRoutePlanner的初始状态
+     * 
+     * @param startCity 起点城市
+     * @param endCity 终点城市
+     * @param attractions 需要访问的景点列表
+     * @param budget 从调用开始计算的总时间预算
+     * @param cancellation 调用它的cancel()可以提前停止后台改进，例如开始新的计算时
+     * @param onRoute 得到路线时调用，第一次在调用线程中，之后在后台线程中
+     * @return 第一条路线，找不到路线时返回null，此时不调用回调
+     */
+    public PlannedRoute findRouteWithin(City startCity, City endCity, List<Attraction> attractions, Duration budget,
+                                        TourBound cancellation, Consumer<PlannedRoute> onRoute) {
+        long deadline = System.nanoTime() + budget.toNanos();
+        if (!containsCities(startCity, endCity)) {
+            return null;
+        }
         
-        // 将所有景点转换为景点所在城市
-        List<City> attractionCities = new ArrayList<>();
-        for (Attraction attraction : attractions) {
-            attractionCities.add(attraction.getLocation());
+        DistanceMatrix matrix = stopMatrix(startCity, endCity, attractions);
+        int[] greedy = new NearestNeighborTour().order(matrix);
+        if (greedy == null) {
+            int[] order = tourStrategy.order(matrix);
+            return order == null ? null : publish(new PlannedRoute(attractions, matrix, order), onRoute);
+        }
+        
+        PlannedRoute first = publish(new PlannedRoute(attractions, matrix, greedy), onRoute);
+        
+        // 没有景点时最短路径就是最优路线，不需要改进
+        if (attractions.isEmpty()) {
+            return first;
         }
         
-        // 当前位置，初始为起点
-        City currentCity = startCity;
+        CompletableFuture.delayedExecutor(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+                .execute(cancellation::cancel);
+        Thread improver = new Thread(new Improvement(first, deadline, cancellation, onRoute), "route-improver");
+        improver.setDaemon(true);
+        improver.start();
+        return first;
+    }
+    
+    /**
+     * 把路线传给回调
+     * @return 传入的路线
+     */
+    private static PlannedRoute publish(PlannedRoute route, Consumer<PlannedRoute> onRoute) {
+        onRoute.accept(route);
+        return route;
+    }
+    
+    /**
+     * 检查起点和终点是否都在图中
+     */
+    boolean containsCities(City startCity, City endCity) {
+        CompactGraph compact = graph.freeze();
+        return compact.getId(startCity) >= 0 && compact.getId(endCity) >= 0;
+    }
+    
+    /**
+     * 不经过景点，从起点直接到终点的最短路线
+     * @return 路线结果，不可达时返回null
+     */
+    RouteResult directRoute(City startCity, City endCity) {
+        DijkstraAlgorithm.ShortestPathResult result = dijkstra.findShortestPath(startCity, endCity);
+        return result == null ? null : new RouteResult(result.getPath(), result.getDistance());
+    }
+    
+    /**
+     * 计算起点、景点城市和终点之间的距离矩阵，格式见TourStrategy
+     * @param startCity 起点城市
+     * @param endCity 终点城市
+     * @param attractions 需要访问的景点列表，为空时矩阵只有起点到终点一项
+     * @return 距离矩阵
+     */
+    DistanceMatrix stopMatrix(City startCity, City endCity, List<Attraction> attractions) {
+        // 景点所在城市，去掉重复的城市
+        List<City> attractionCities = new ArrayList<>(new LinkedHashSet<>(attractionLocations(attractions)));
+        int k = attractionCities.size();
         
-        // 记录累计距离和完整路径
+        // 起点和每个景点城市各做一次搜索：
+        // 行为 [起点, 景点1..k]，列为 [景点1..k, 终点]
+        List<City> sources = new ArrayList<>(k + 1);
+        sources.add(startCity);
+        sources.addAll(attractionCities);
+        List<City> targets = new ArrayList<>(k + 1);
+        targets.addAll(attractionCities);
+        targets.add(endCity);
+        return dijkstra.distanceMatrix(sources, targets);
+    }
+    
+    /**
+     * 按访问顺序拼接完整路线
+     * @param matrix 距离矩阵
+     * @param order 景点访问顺序
+     * @return 路线结果
+     */
+    static RouteResult assemble(DistanceMatrix matrix, int[] order) {
+        int k = order.length;
+        
+        // 按顺序拼接各段路径：景点j对应矩阵第j + 1行、第j列
         int totalDistance = 0;
         List<City> fullPath = new ArrayList<>();
+        int current = 0;
+        for (int next : order) {
+            appendSegment(fullPath, matrix.getPath(current, next));
+            totalDistance += matrix.getDistance(current, next);
+            current = next + 1;
+        }
         
-        // 记录已访问的城市
-        Set<City> visitedCities = new HashSet<>();
+        // 最后一段：从最后一个景点到终点
+        appendSegment(fullPath, matrix.getPath(current, k));
+        totalDistance += matrix.getDistance(current, k);
         
-        // 遍历所有景点，每次选择距离当前位置最近的景点
-        while (!attractionCities.isEmpty()) {
-            // 找出下一个最近的景点城市
-            City nextCity = null;
-            DijkstraAlgorithm.ShortestPathResult shortestPathToNext = null;
-            int shortestDistance = Integer.MAX_VALUE;
-            
-            for (City attractionCity : attractionCities) {
-                // 如果已经访问过此城市，跳过
-                if (visitedCities.contains(attractionCity)) {
-                    continue;
-                }
-                
-                // 计算当前城市到景点城市的最短路径
-                String cacheKey = currentCity.toString() + "->" + attractionCity.toString();
-                DijkstraAlgorithm.ShortestPathResult pathResult = distanceCache.get(cacheKey);
-                
-                if (pathResult == null) {
-                    pathResult = dijkstra.findShortestPath(currentCity, attractionCity);
-                    distanceCache.put(cacheKey, pathResult);
-                }
-                
-                // 如果无法到达此景点城市，跳过
-                if (pathResult == null) {
-                    continue;
-                }
-                
-                // 如果此路径更短，更新下一个目标城市
-                if (pathResult.getDistance() < shortestDistance) {
-                    nextCity = attractionCity;
-                    shortestPathToNext = pathResult;
-                    shortestDistance = pathResult.getDistance();
-                }
+        return new RouteResult(fullPath, totalDistance);
+    }
+    
+    /**
+     * 将景点列表转换为景点所在城市列表
+     * @param attractions 景点列表
+     * @return 城市列表
+     */
+    private static List<City> attractionLocations(List<Attraction> attractions) {
+        List<City> cities = new ArrayList<>(attractions.size());
+        for (Attraction attraction : attractions) {
+            cities.add(attraction.getLocation());
+        }
+        return cities;
+    }
+    
+    /**
+     * 将一段路径追加到完整路径，不是第一段时去掉与上一段重复的首个城市
+     * @param fullPath 完整路径
+     * @param segment 路径段
+     */
+    private static void appendSegment(List<City> fullPath, List<City> segment) {
+        fullPath.addAll(fullPath.isEmpty() ? segment : segment.subList(1, segment.size()));
+    }
+    
+    /**
+     * 一次后台改进，依次运行越来越强的算法，只发布比已发布路线更短的结果
+     */
+    private static final class Improvement implements Runnable {
+        private final List<Attraction> attractions;
+        private final DistanceMatrix matrix;
+        private final long deadline;
+        private final TourBound cancellation;
+        private final Consumer<PlannedRoute> onImproved;
+        private int[] best;
+        private long bestLength;
+        
+        Improvement(PlannedRoute first, long deadline, TourBound cancellation, Consumer<PlannedRoute> onImproved) {
+            this.attractions = first.attractions;
+            this.matrix = first.matrix;
+            this.deadline = deadline;
+            this.cancellation = cancellation;
+            this.onImproved = onImproved;
+            this.best = first.order;
+            this.bestLength = TourCosts.length(matrix, best);
+        }
+        
+        @Override
+        public void run() {
+            // 局部搜索很快，先发布一次
+            if (cancellation.isCancelled()) {
+                return;
             }
-            
-            // 如果找不到下一个可访问的景点城市，路径不可行
-            if (nextCity == null) {
-                return null;
+            offer(new LocalSearchTour(new NearestNeighborTour()).improve(matrix, best));
+            long remainingMillis = (deadline - System.nanoTime()) / 1_000_000L;
+            if (remainingMillis <= 0 || cancellation.isCancelled()) {
+                return;
             }
             
-            // 添加到当前城市到下一个景点城市的路径
-            List<City> pathSegment = shortestPathToNext.getPath();
-            
-            // 如果不是第一段路径，移除重复的当前城市（路径段的第一个城市）
-            if (!fullPath.isEmpty()) {
-                pathSegment = pathSegment.subList(1, pathSegment.size());
+            // 更强的算法以当前最好的顺序为初始解，时间预算为剩余的时间
+            int[] seed = best;
+            TourStrategy current = m -> seed.clone();
+            int k = best.length;
+            TourStrategy strategy;
+            if (k <= HeldKarpTour.DEFAULT_MAX_STOPS) {
+                strategy = new HeldKarpTour(HeldKarpTour.DEFAULT_MAX_STOPS, current);
+            } else if (k <= BranchAndBoundTour.MAX_STOPS) {
+                strategy = new BranchAndBoundTour(remainingMillis, current);
+            } else {
+                strategy = new LinKernighanTour(current, remainingMillis);
             }
-            
-            fullPath.addAll(pathSegment);
-            totalDistance += shortestPathToNext.getDistance();
-            
-            // 更新当前位置和已访问集合
-            currentCity = nextCity;
-            visitedCities.add(currentCity);
-            attractionCities.remove(currentCity);
+            offer(strategy.order(matrix, cancellation));
         }
         
-        // 最后计算从最后一个景点到终点的路径
-        DijkstraAlgorithm.ShortestPathResult finalPathResult = dijkstra.findShortestPath(currentCity, endCity);
+        /**
+         * 新顺序比已发布的更短且未超出预算、未被取消时发布
+         */
+        private void offer(int[] order) {
+            if (order == null || cancellation.isCancelled() || System.nanoTime() - deadline > 0) {
+                return;
+            }
+            long length = TourCosts.length(matrix, order);
+            if (length < bestLength) {
+                best = order;
+                bestLength = length;
+                onImproved.accept(new PlannedRoute(attractions, matrix, order));
+            }
+        }
+    }
+    
+    /**
+     * 规划得到的路线，同时保留计算它用到的距离矩阵和景点访问顺序
+     */
+    public static final class PlannedRoute {
+        private final List<Attraction> attractions;
+        private final DistanceMatrix matrix;
+        private final int[] order;
+        private final RouteResult route;
         
-        // 如果无法到达终点，路径不可行
-        if (finalPathResult == null) {
-            return null;
+        PlannedRoute(List<Attraction> attractions, DistanceMatrix matrix, int[] order) {
+            this.attractions = Collections.unmodifiableList(new ArrayList<>(attractions));
+            this.matrix = matrix;
+            this.order = order.clone();
+            this.route = assemble(matrix, order);
         }
         
-        // 添加最后一段路径（不包括重复的当前城市）
-        List<City> finalPathSegment = finalPathResult.getPath().subList(1, finalPathResult.getPath().size());
-        fullPath.addAll(finalPathSegment);
-        totalDistance += finalPathResult.getDistance();
+        public RouteResult getRoute() {
+            return route;
+        }
         
-        return new RouteResult(fullPath, totalDistance);
+        public List<Attraction> getAttractions() {
+            return attractions;
+        }
+        
+        /**
+         * 获取距离矩阵，格式见TourStrategy
+         * @return 距离矩阵
+         */
+        public DistanceMatrix getMatrix() {
+            return matrix;
+        }
+        
+        /**
+         * 获取景点城市的访问顺序，下标对应矩阵的列
+         * @return 访问顺序的副本
+         */
+        public int[] getOrder() {
+            return order.clone();
+        }
     }
     
     /**
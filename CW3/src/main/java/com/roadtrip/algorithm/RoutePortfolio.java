@@ -0,0 +1,200 @@
+package com.roadtrip.algorithm;
+
+import com.roadtrip.model.Attraction;
+import com.roadtrip.model.City;
+import com.roadtrip.model.Graph;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 组合求解器：在同一个距离矩阵上并行运行多种访问顺序策略，返回截止时间前得到的最短路线
+ * 
+ * 不同的景点集合适合不同的算法：景点少时动态规划最快，中等规模时分支定界能在预算内证明最优，
+ * 规模更大时只有局部搜索类的启发式来得及。这里不按景点数预先选择，而是把所有策略提交到同一个线程池，
+ * 它们通过一个TourBound共享已知最短路线的长度（分支定界用它剪枝）和已证明的下界。
+ * 某条已完成的路线被证明最优或到达截止时间后，取消其余策略并返回结果。
+ * 最近邻的结果在提交前同步算出，截止时间到达时总有一条可行路线可以返回
+ */
+public class RoutePortfolio {
+    /** 默认策略自身的时间预算（毫秒），只作为上限，实际由截止时间通过取消控制 */
+    public static final long STRATEGY_TIME_BUDGET_MILLIS = 60_000;
+    
+    private static final String NEAREST_NEIGHBOR = "最近邻";
+    private static final String SHORTEST_PATH = "最短路径";
+    
+    private final RouteOptimizer optimizer;
+    private final ExecutorService executor;
+    private final Map<String, TourStrategy> strategies = new LinkedHashMap<>();
+    
+    /**
+     * 构造函数，创建不包含任何策略的组合求解器
+     * @param graph 城市路网图
+     * @param searchMode 计算每段最短路径时使用的搜索模式
+     * @param executor 运行各策略的线程池，由调用者负责关闭
+     */
+    public RoutePortfolio(Graph graph, DijkstraAlgorithm.SearchMode searchMode, ExecutorService executor) {
+        this.optimizer = new RouteOptimizer(graph, searchMode);
+        this.executor = executor;
+    }
+    
+    /**
+     * 创建包含默认策略的组合求解器：Held-Karp、分支定界、Lin-Kernighan和局部搜索。
+     * 景点数超出Held-Karp或分支定界的上限时，它们退化为最近邻，不影响结果
+     * @param graph 城市路网图
+     * @param searchMode 计算每段最短路径时使用的搜索模式
+     * @param executor 运行各策略的线程池，由调用者负责关闭
+     * @return 组合求解器
+     */
+    public static RoutePortfolio withDefaultStrategies(Graph graph, DijkstraAlgorithm.SearchMode searchMode,
+                                                       ExecutorService executor) {
+        TourStrategy greedy = new NearestNeighborTour();
+        TourStrategy localSearch = new LocalSearchTour(greedy);
+        return new RoutePortfolio(graph, searchMode, executor)
+                .add("Held-Karp", new HeldKarpTour(HeldKarpTour.DEFAULT_MAX_STOPS, greedy))
+                .add("分支定界", new BranchAndBoundTour(STRATEGY_TIME_BUDGET_MILLIS, greedy))
+                .add("Lin-Kernighan", new LinKernighanTour(localSearch, STRATEGY_TIME_BUDGET_MILLIS))
+                .add("局部搜索", localSearch);
+    }
+    
+    /**
+     * 添加一个参与竞争的策略
+     * @param name 策略名称，出现在结果中
+     * @param strategy 访问顺序策略
+     * @return 当前组合求解器
+     * @throws IllegalArgumentException 如果名称已被使用
+     */
+    public RoutePortfolio add(String name, TourStrategy strategy) {
+        if (name.equals(NEAREST_NEIGHBOR) || name.equals(SHORTEST_PATH) || strategies.containsKey(name)) {
+            throw new IllegalArgumentException("策略名称已被使用: " + name);
+        }
+        strategies.put(name, strategy);
+        return this;
+    }
+    
+    /**
+     * 并行运行所有策略，返回截止时间前得到的最短路线
+     * 长度相同时先得到的结果优先，最近邻的结果最先
+     * 
+     * @param startCity 起点城市
+     * @param endCity 终点城市
+     * @param attractions 需要访问的景点列表
+     * @param timeLimit 从调用开始计算的时间限制
+     * @return 求解结果，找不到路线时返回null
+     */
+    public Result findBestRoute(City startCity, City endCity, List<Attraction> attractions, Duration timeLimit) {
+        long deadline = System.nanoTime() + timeLimit.toNanos();
+        if (!optimizer.containsCities(startCity, endCity)) {
+            return null;
+        }
+        
+        // 没有景点时最短路径就是最优路线
+        if (attractions.isEmpty()) {
+            RouteOptimizer.RouteResult route = optimizer.directRoute(startCity, endCity);
+            return route == null ? null : new Result(route, SHORTEST_PATH, true);
+        }
+        
+        DistanceMatrix matrix = optimizer.stopMatrix(startCity, endCity, attractions);
+        TourBound bound = new TourBound();
+        Candidate best = new Candidate(NEAREST_NEIGHBOR, new NearestNeighborTour().order(matrix), matrix);
+        bound.offerUpperBound(best.cost);
+        
+        CompletionService<Candidate> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Candidate>> futures = new ArrayList<>();
+        for (Map.Entry<String, TourStrategy> entry : strategies.entrySet()) {
+            String name = entry.getKey();
+            TourStrategy strategy = entry.getValue();
+            futures.add(completion.submit(() -> new Candidate(name, strategy.order(matrix, bound), matrix)));
+        }
+        
+        try {
+            // 已有的最短路线达到下界时即已证明最优，不必再等
+            for (int pending = futures.size(); pending > 0 && bound.getLowerBound() < best.cost; pending--) {
+                Future<Candidate> done = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    break; // 到达截止时间
+                }
+                
+                Candidate candidate;
+                try {
+                    candidate = done.get();
+                } catch (ExecutionException e) {
+                    continue; // 出错的策略不参与比较
+                }
+                if (candidate.cost < best.cost) {
+                    best = candidate;
+                }
+                
+                // 上界已被证明最优但对应的策略还在运行时，让它停止并交出当前结果
+                if (bound.isClosed()) {
+                    bound.cancel();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            bound.cancel();
+            for (Future<Candidate> future : futures) {
+                future.cancel(true);
+            }
+        }
+        
+        if (best.order == null) {
+            return null;
+        }
+        RouteOptimizer.RouteResult route = RouteOptimizer.assemble(matrix, best.order);
+        return new Result(route, best.name, bound.getLowerBound() >= best.cost);
+    }
+    
+    /**
+     * 一个策略给出的访问顺序及其长度
+     */
+    private static final class Candidate {
+        private final String name;
+        private final int[] order;
+        private final int cost; // 不存在可行路线时为DistanceMatrix.UNREACHABLE
+        
+        Candidate(String name, int[] order, DistanceMatrix matrix) {
+            this.name = name;
+            this.order = order;
+            long length = order == null ? DistanceMatrix.UNREACHABLE : TourCosts.length(matrix, order);
+            this.cost = (int) Math.min(length, DistanceMatrix.UNREACHABLE);
+        }
+    }
+    
+    /**
+     * 组合求解的结果
+     */
+    public static class Result {
+        private final RouteOptimizer.RouteResult route;
+        private final String strategyName;
+        private final boolean optimal;
+        
+        public Result(RouteOptimizer.RouteResult route, String strategyName, boolean optimal) {
+            this.route = route;
+            this.strategyName = strategyName;
+            this.optimal = optimal;
+        }
+        
+        public RouteOptimizer.RouteResult getRoute() {
+            return route;
+        }
+        
+        /**
+         * 获取给出这条路线的策略名称
+         * @return 策略名称
+         */
+        public String getStrategyName() {
+            return strategyName;
+        }
+        
+        /**
+         * 是否已证明这条路线的访问顺序最优
+         * @return 是否已证明最优
+         */
+        public boolean isOptimal() {
+            return optimal;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.roadtrip.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * 最短路径搜索的可复用工作区，每个线程一份
+ * 距离、前驱等数组配合代数标记（generation stamp）使用：
+ * 城市的标记不等于当前代数时视为未访问，因此两次查询之间的重置是O(1)，
+ * 一次查询的耗时只与它实际访问的城市数有关，与整张图的大小无关
+ */
+final class SearchWorkspace {
+    static final int UNREACHED = Integer.MAX_VALUE;
+    
+    private static final ThreadLocal<SearchWorkspace> CURRENT = ThreadLocal.withInitial(SearchWorkspace::new);
+    
+    final Labels forward = new Labels();
+    final Labels backward = new Labels();
+    final IntList path = new IntList();      // 路径城市编号缓冲区
+    final IntList stack = new IntList();     // 捷径展开使用的显式栈
+    
+    private SearchWorkspace() {
+    }
+    
+    /**
+     * 获取当前线程的工作区，并为新的一次查询重置
+     * 同一线程上的搜索不会嵌套，因此一个线程只需要一份工作区
+     * @param capacity 城市数量
+     * @return 工作区
+     */
+    static SearchWorkspace acquire(int capacity) {
+        SearchWorkspace workspace = CURRENT.get();
+        workspace.forward.reset(capacity);
+        workspace.backward.reset(capacity);
+        workspace.path.clear();
+        workspace.stack.clear();
+        return workspace;
+    }
+    
+    /**
+     * 一个搜索方向上的标签：距离、前驱城市、到达所用的边，以及该方向的优先队列
+     */
+    static final class Labels {
+        private int[] distances = new int[0];
+        private int[] predecessors = new int[0];
+        private int[] edges = new int[0];
+        private int[] stamps = new int[0];
+        private int generation;
+        
+        private IndexedMinHeap heap;
+        private BucketQueue buckets;
+        
+        /**
+         * 开始新的一次查询：递增代数，使所有旧标签失效
+         * @param capacity 城市数量
+         */
+        private void reset(int capacity) {
+            if (stamps.length < capacity) {
+                distances = new int[capacity];
+                predecessors = new int[capacity];
+                edges = new int[capacity];
+                stamps = new int[capacity];
+                generation = 0;
+            }
+            // 代数用尽时才需要真正清空标记
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                generation = 0;
+            }
+            generation++;
+        }
+        
+        /**
+         * 判断城市在本次查询中是否已被访问
+         * @param v 城市编号
+         * @return 已访问返回true
+         */
+        boolean reached(int v) {
+            return stamps[v] == generation;
+        }
+        
+        /**
+         * 获取城市在本次查询中的暂定距离
+         * @param v 城市编号
+         * @return 距离，未访问时为UNREACHED
+         */
+        int distance(int v) {
+            return stamps[v] == generation ? distances[v] : UNREACHED;
+        }
+        
+        /**
+         * 获取前驱城市，只对已访问的城市有意义
+         * @param v 城市编号
+         * @return 前驱城市编号，起点为-1
+         */
+        int predecessor(int v) {
+            return predecessors[v];
+        }
+        
+        /**
+         * 获取到达城市所用的边下标，只对已访问的城市有意义
+         * @param v 城市编号
+         * @return 边下标
+         */
+        int edge(int v) {
+            return edges[v];
+        }
+        
+        /**
+         * 记录城市的距离和前驱
+         * @param v 城市编号
+         * @param distance 距离
+         * @param predecessor 前驱城市编号，起点为-1
+         */
+        void set(int v, int distance, int predecessor) {
+            stamps[v] = generation;
+            distances[v] = distance;
+            predecessors[v] = predecessor;
+        }
+        
+        /**
+         * 记录城市的距离、前驱和到达所用的边
+         * @param v 城市编号
+         * @param distance 距离
+         * @param predecessor 前驱城市编号，起点为-1
+         * @param edge 边下标
+         */
+        void set(int v, int distance, int predecessor, int edge) {
+            set(v, distance, predecessor);
+            edges[v] = edge;
+        }
+        
+        /**
+         * 获取已清空的索引堆
+         * @return 优先队列
+         */
+        NodeQueue heap() {
+            if (heap == null || heap.capacity() < stamps.length) {
+                heap = new IndexedMinHeap(stamps.length);
+            } else {
+                heap.clear();
+            }
+            return heap;
+        }
+        
+        /**
+         * 获取已清空、能容纳给定键跨度的桶队列
+         * @param keySpan 队列中最大键与最小键之差的上限
+         * @return 优先队列
+         */
+        NodeQueue buckets(int keySpan) {
+            if (buckets == null || buckets.capacity() < stamps.length
+                    || buckets.bucketCount() < BucketQueue.bucketCountFor(keySpan)) {
+                buckets = new BucketQueue(stamps.length, keySpan);
+            } else {
+                buckets.clear();
+            }
+            return buckets;
+        }
+        
+        /**
+         * 沿前驱从终点回溯到起点，得到 起点 -> 终点 的城市编号序列
+         * @param end 终点城市编号
+         * @return 城市编号数组
+         */
+        int[] pathTo(int end) {
+            int length = 0;
+            for (int current = end; current != -1; current = predecessors[current]) {
+                length++;
+            }
+            int[] ids = new int[length];
+            for (int current = end; current != -1; current = predecessors[current]) {
+                ids[--length] = current;
+            }
+            return ids;
+        }
+    }
+    
+    /**
+     * 可增长的int数组
+     */
+    static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+        
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+        
+        int removeLast() {
+            return values[--size];
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        boolean isEmpty() {
+            return size == 0;
+        }
+        
+        void clear() {
+            size = 0;
+        }
+        
+        /**
+         * 原地反转所有元素
+         */
+        void reverse() {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                int swap = values[i];
+                values[i] = values[j];
+                values[j] = swap;
+            }
+        }
+        
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.roadtrip.algorithm;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多个策略并行求解同一个距离矩阵时共享的界
+ * 上界是目前已知最短路线的长度，下界是已证明的最优长度的下限，两者相遇即证明了最优。
+ * 精确算法可以用上界剪枝，找到更短的路线或证明了下界时更新它；
+ * 调用cancel()后各策略应尽早返回
+ */
+public class TourBound {
+    private final AtomicInteger upperBound = new AtomicInteger(DistanceMatrix.UNREACHABLE);
+    private final AtomicInteger lowerBound = new AtomicInteger(0);
+    private volatile boolean cancelled;
+    
+    /**
+     * 获取上界
+     * @return 已知最短路线的长度，还没有路线时为DistanceMatrix.UNREACHABLE
+     */
+    public int getUpperBound() {
+        return upperBound.get();
+    }
+    
+    /**
+     * 获取下界
+     * @return 已证明的最优长度下限
+     */
+    public int getLowerBound() {
+        return lowerBound.get();
+    }
+    
+    /**
+     * 报告找到了一条长度为cost的路线，比当前上界短时更新上界
+     * @param cost 路线长度
+     */
+    public void offerUpperBound(int cost) {
+        upperBound.accumulateAndGet(cost, Math::min);
+    }
+    
+    /**
+     * 报告已证明最优长度不小于bound，比当前下界大时更新下界
+     * @param bound 最优长度的下限
+     */
+    public void offerLowerBound(int bound) {
+        lowerBound.accumulateAndGet(bound, Math::max);
+    }
+    
+    /**
+     * 上界和下界是否已经相遇，即上界对应的路线已被证明最优
+     * @return 是否已证明最优
+     */
+    public boolean isClosed() {
+        return lowerBound.get() >= upperBound.get();
+    }
+    
+    /**
+     * 通知使用这个界的策略停止搜索
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
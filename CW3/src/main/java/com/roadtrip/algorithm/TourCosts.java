@@ -0,0 +1,108 @@
+package com.roadtrip.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * 访问顺序局部搜索共用的对称距离表和邻居表
+ * 城市编号：0为起点，1..k为景点（景点j为j + 1），k + 1为终点
+ * 
+ * 矩阵只有 [起点, 景点] -> [景点, 终点] 方向，另一个方向由对称性补全。
+ * 两个方向都有时取两者之和：道路双向时只是把所有距离乘2，
+ * 矩阵不对称时也保证翻转一段路线的收益计算准确、搜索一定终止
+ */
+final class TourCosts {
+    /** 不可达的边按很大的距离计算，不会被改进移动选中 */
+    static final long UNREACHABLE_COST = 1L << 40;
+    
+    private final int n;
+    private final long[] cost; // cost[a * n + b]，两个方向之和
+    
+    /**
+     * 构造函数
+     * @param matrix 距离矩阵，格式见TourStrategy
+     */
+    TourCosts(DistanceMatrix matrix) {
+        int k = matrix.getTargets().size() - 1;
+        n = k + 2;
+        int end = k + 1;
+        
+        cost = new long[n * n];
+        for (int a = 0; a <= k; a++) {
+            for (int b = 1; b <= end; b++) {
+                int distance = matrix.getDistance(a, b - 1);
+                long value = distance == DistanceMatrix.UNREACHABLE ? UNREACHABLE_COST : distance;
+                if (a == 0 || b == end) {
+                    cost[a * n + b] = 2 * value;
+                    cost[b * n + a] = 2 * value;
+                } else {
+                    cost[a * n + b] += value;
+                    cost[b * n + a] += value;
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return 城市数，包括起点和终点
+     */
+    int size() {
+        return n;
+    }
+    
+    /**
+     * 获取两个城市之间的对称距离
+     */
+    long cost(int a, int b) {
+        return cost[a * n + b];
+    }
+    
+    /**
+     * 为每个城市找出最近的若干景点：扫描所有景点，插入到按距离排序的小数组中。
+     * 每个城市都要扫描k个景点，最坏为O(k^2 * 邻居数)，多数景点会被第一次比较淘汰，通常接近O(k^2)
+     * @param count 每个城市的邻居数
+     * @return 每个城市的邻居表，按距离从近到远排列
+     */
+    int[][] nearestStops(int count) {
+        int k = n - 2;
+        int[][] neighbors = new int[n][];
+        count = Math.min(count, k);
+        for (int a = 0; a < n; a++) {
+            int[] list = new int[count];
+            int size = 0;
+            for (int city = 1; city <= k; city++) {
+                if (city == a) {
+                    continue;
+                }
+                long distance = cost[a * n + city];
+                if (size == count && distance >= cost[a * n + list[size - 1]]) {
+                    continue;
+                }
+                int i = size < count ? size++ : size - 1;
+                while (i > 0 && cost[a * n + list[i - 1]] > distance) {
+                    list[i] = list[i - 1];
+                    i--;
+                }
+                list[i] = city;
+            }
+            neighbors[a] = size == count ? list : Arrays.copyOf(list, size);
+        }
+        return neighbors;
+    }
+    
+    /**
+     * 计算访问顺序对应的路线总长度（按矩阵中的有向距离）
+     * @param matrix 距离矩阵
+     * @param order 景点访问顺序
+     * @return 总长度，不可达的段按很大的距离计算
+     */
+    static long length(DistanceMatrix matrix, int[] order) {
+        long total = 0;
+        int row = 0;
+        for (int stop : order) {
+            total += matrix.isReachable(row, stop) ? matrix.getDistance(row, stop) : UNREACHABLE_COST;
+            row = stop + 1;
+        }
+        int end = matrix.getTargets().size() - 1;
+        return total + (matrix.isReachable(row, end) ? matrix.getDistance(row, end) : UNREACHABLE_COST);
+    }
+}
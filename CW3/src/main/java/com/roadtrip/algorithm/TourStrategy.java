@@ -0,0 +1,27 @@
+package com.roadtrip.algorithm;
+
+/**
+ * 景点访问顺序的求解策略
+ * 输入为RouteOptimizer构造的距离矩阵：行为 [起点, 景点1..k]，列为 [景点1..k, 终点]，
+ * 即景点i对应第i + 1行、第i列，起点为第0行，终点为第k列
+ */
+public interface TourStrategy {
+    
+    /**
+     * 求景点的访问顺序，起点和终点固定
+     * @param matrix 距离矩阵
+     * @return 景点编号（0..k-1）的访问顺序，不存在可行路线时返回null
+     */
+    int[] order(DistanceMatrix matrix);
+    
+    /**
+     * 与其他策略并行求解时使用：可以用bound的上界剪枝、报告找到的路线和证明的下界，
+     * bound被取消后应尽早返回。默认实现忽略bound
+     * @param matrix 距离矩阵
+     * @param bound 共享的界
+     * @return 景点编号（0..k-1）的访问顺序，不存在可行路线或被取消时可以返回null
+     */
+    default int[] order(DistanceMatrix matrix, TourBound bound) {
+        return order(matrix);
+    }
+}
@@ -55,7 +55,7 @@ public class RoadTripController implements Initializable {
             routeService = new RouteService();
 
             // 填充城市下拉框
-            List<String> cityNames = new ArrayList<>(routeService.getCityMap().keySet());
+            List<String> cityNames = new ArrayList<>(routeService.getGraph().getCityNames());
             Collections.sort(cityNames);
             startCityComboBox.setItems(FXCollections.observableArrayList(cityNames));
             endCityComboBox.setItems(FXCollections.observableArrayList(cityNames));
@@ -140,13 +140,13 @@ public class RoadTripController implements Initializable {
         Map<String, double[]> points = new HashMap<>();
         
         // 添加起点和终点
-        if (routeService.getCityMap().containsKey(startCity)) {
-            double[] coords = normalizeCoordinates(routeService.getCityMap().get(startCity), width, height);
+        if (routeService.getGraph().getCityId(startCity) >= 0) {
+            double[] coords = normalizeCoordinates(routeService.getGraph().getCity(startCity), width, height);
             points.put(startCity, coords);
         }
         
-        if (routeService.getCityMap().containsKey(endCity)) {
-            double[] coords = normalizeCoordinates(routeService.getCityMap().get(endCity), width, height);
+        if (routeService.getGraph().getCityId(endCity) >= 0) {
+            double[] coords = normalizeCoordinates(routeService.getGraph().getCity(endCity), width, height);
             points.put(endCity, coords);
         }
         
@@ -155,8 +155,8 @@ public class RoadTripController implements Initializable {
             Attraction attr = routeService.getAttractionMap().get(attraction);
             if (attr != null) {
                 String city = attr.getLocation();
-                if (routeService.getCityMap().containsKey(city)) {
-                    double[] coords = normalizeCoordinates(routeService.getCityMap().get(city), width, height);
+                if (routeService.getGraph().getCityId(city) >= 0) {
+                    double[] coords = normalizeCoordinates(routeService.getGraph().getCity(city), width, height);
                     points.put(attraction, coords);
                 }
             }
@@ -1,5 +1,6 @@
 package com.roadtrip.gui;
 
+import com.roadtrip.algorithm.TourBound;
 import com.roadtrip.model.Attraction;
 import com.roadtrip.model.City;
 import com.roadtrip.model.Graph;
@@ -26,7 +27,9 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Function;
 
 /**
  * 路线规划界面的增强版控制器类
@@ -66,12 +69,18 @@ public class RoadTripController {
     @FXML private Button panDownButton;
     @FXML private ToggleButton editModeToggle;
     
+    // 路线计算在后台继续优化的时间预算
+    private static final Duration ROUTE_TIME_BUDGET = Duration.ofSeconds(3);
+    
     // 数据模型
     private List<String> allCities = new ArrayList<>();
     private List<String> allAttractions = new ArrayList<>();
     private ObservableList<String> selectedAttractions = FXCollections.observableArrayList();
     private RouteService routeService;
     private List<String> currentRouteResults;
+    private int routeGeneration = 0;  // 每次计算路线加一，用于丢弃旧计算的结果
+    private TourBound routeRefinement;  // 当前路线的后台改进，重新计算或增删景点时取消
+    private RouteService.IncrementalRoute editableRoute;  // 当前路线的增量规划，增删景点时使用
     
     // 地图状态变量
     private double mapScale = 1.0;
@@ -137,8 +146,7 @@ public class RoadTripController {
      */
     private void loadCitiesAndAttractions() {
         // 获取所有城市
-        Map<String, City> cityMap = routeService.getCityMap();
-        allCities.addAll(cityMap.keySet());
+        allCities.addAll(routeService.getGraph().getCityNames());
         allCities.sort(String::compareTo);
         
         // 获取所有景点
@@ -188,11 +196,13 @@ public class RoadTripController {
         System.out.println("美国地图范围: 经度[" + minLon + ", " + maxLon + "], 纬度[" + minLat + ", " + maxLat + "]");
         
         // 为每个城市计算0-1范围内的相对坐标
-        for (Map.Entry<String, City> entry : routeService.getCityMap().entrySet()) {
-            String cityName = entry.getKey();
+        for (String cityName : routeService.getGraph().getCityNames()) {
             
-            // 获取城市的经纬度
-            double[] latLong = cityLatLong.get(cityName);
+            // 获取城市的经纬度，优先使用路网数据中加载的坐标
+            City city = routeService.getGraph().getCity(cityName);
+            double[] latLong = city != null && city.hasCoordinates()
+                    ? new double[]{city.getLatitude(), city.getLongitude()}
+                    : cityLatLong.get(cityName);
             if (latLong != null) {
                 // 转换为相对坐标 (经度从负到正，所以需要将负值转换为正值)
                 double normalizedX = (latLong[1] - minLon) / (maxLon - minLon);
@@ -204,7 +214,6 @@ public class RoadTripController {
                     latLong[1] + ", " + latLong[0] + "]");
             } else {
                 // 找不到经纬度，使用随机坐标（但实际项目应该找出所有城市的准确经纬度）
-            City city = entry.getValue();
                 double randX = 0.1 + Math.random() * 0.8; // 10%-90%范围
                 double randY = 0.1 + Math.random() * 0.8;
                 cityCoordinates.put(cityName, new double[]{randX, randY});
@@ -321,6 +330,7 @@ public class RoadTripController {
             String selected = selectedAttractionsListView.getSelectionModel().getSelectedItem();
             if (selected != null) {
                 selectedAttractions.remove(selected);
+                updateRoute(route -> route.removeAttraction(selected));
             }
         });
         
@@ -334,6 +344,10 @@ public class RoadTripController {
             destinationCityComboBox.setValue(temp);
         });
         
+        // 起点或终点改变后，已有路线不能再增量修改
+        startingCityComboBox.valueProperty().addListener((observable, oldValue, newValue) -> editableRoute = null);
+        destinationCityComboBox.valueProperty().addListener((observable, oldValue, newValue) -> editableRoute = null);
+        
         // 导出路线按钮
         exportRouteButton.setOnAction(event -> exportRoute());
         
@@ -450,9 +464,29 @@ public class RoadTripController {
         if (selectedAttraction != null && !selectedAttractions.contains(selectedAttraction)) {
             selectedAttractions.add(selectedAttraction);
             statusLabel.setText("已添加景点: " + selectedAttraction);
+            updateRoute(route -> route.addAttraction(selectedAttraction));
         }
     }
     
+    /**
+     * 增删景点后更新已显示的路线：只插入或摘除变化的景点并局部调整，不重新计算整条路线。
+     * 之前的计算仍在发布的改进结果对应旧的景点列表，一并丢弃
+     * @param edit 对当前路线的修改，返回新的路线描述
+     */
+    private void updateRoute(Function<RouteService.IncrementalRoute, List<String>> edit) {
+        if (currentRouteResults == null) {
+            return;
+        }
+        routeGeneration++;
+        cancelRefinement();
+        if (editableRoute == null) {
+            statusLabel.setText("景点已变化，请重新计算路线");
+            return;
+        }
+        showRoute(edit.apply(editableRoute));
+        statusLabel.setText("路线已更新");
+    }
+    
     /**
      * 计算并显示路线
      */
@@ -471,56 +505,41 @@ public class RoadTripController {
         progressBar.setProgress(-1);  // 不确定进度
         statusLabel.setText("正在计算路线...");
         
-        // 使用后台线程计算路线，避免UI冻结
+        // 使用后台线程计算路线，避免UI冻结：先显示一条可行路线，之后每得到更短的路线就刷新。
+        // 所有路线都经同一个回调按顺序交给UI线程，不会出现较差的路线覆盖已显示的改进结果
+        int generation = ++routeGeneration;
+        editableRoute = null;
+        cancelRefinement();
+        TourBound refinement = new TourBound();
+        routeRefinement = refinement;
+        List<String> attractions = new ArrayList<>(selectedAttractions);
         new Thread(() -> {
             try {
-                // 获取路线结果
-                List<String> results = routeService.route(startCity, endCity, selectedAttractions);
-                currentRouteResults = results;
-                
-                // 解析总距离
-                for (String line : results) {
-                    if (line.startsWith("Total distance:")) {
-                        String distanceStr = line.substring("Total distance:".length()).trim();
-                        distanceStr = distanceStr.replace(" miles", "");
-                        try {
-                            totalDistance = Double.parseDouble(distanceStr);
-                        } catch (NumberFormatException e) {
-                            totalDistance = 0;
-                        }
-                        break;
-                    }
-                }
+                // 获取路线结果，旧的计算发布的路线直接丢弃
+                List<String> errors = routeService.routeWithin(ROUTE_TIME_BUDGET, startCity, endCity, attractions,
+                        refinement, route -> Platform.runLater(() -> {
+                            if (generation != routeGeneration) {
+                                return;
+                            }
+                            // 进度条仍在显示说明这是第一条路线；显示的路线同时用于之后的增删景点
+                            boolean first = progressBar.isVisible();
+                            editableRoute = route;
+                            showRoute(route.getRoute());
+                            progressBar.setVisible(false);
+                            statusLabel.setText(first ? "路线计算完成，正在后台继续优化..." : "路线已优化");
+                        }));
                 
-                // 提取路线城市序列
-                optimalRoute.clear();
-                for (String line : results) {
-                    if (line.startsWith("Starting from: ")) {
-                        optimalRoute.add(line.substring("Starting from: ".length()));
-                    } else if (!line.startsWith("Total distance:") && !line.isEmpty()) {
-                        String cityName = line;
-                        if (line.contains(" (Visiting:")) {
-                            cityName = line.substring(0, line.indexOf(" (Visiting:"));
+                // 输入有误或找不到路线时显示错误信息
+                if (errors != null) {
+                    Platform.runLater(() -> {
+                        if (generation != routeGeneration) {
+                            return;
                         }
-                        optimalRoute.add(cityName);
-                    }
+                        showRoute(errors);
+                        progressBar.setVisible(false);
+                        statusLabel.setText("路线计算完成");
+                    });
                 }
-                
-                // 在UI线程更新界面
-                Platform.runLater(() -> {
-                    // 更新路线详情列表
-                    routeDetailsListView.setItems(FXCollections.observableArrayList(results));
-                    
-                    // 更新总距离标签
-                    totalDistanceLabel.setText("总距离: " + totalDistance + " miles");
-                    
-                    // 重绘地图
-                    redrawMap();
-                    
-                    // 隐藏进度条，更新状态
-                    progressBar.setVisible(false);
-                    statusLabel.setText("路线计算完成");
-                });
             } catch (Exception e) {
                 Platform.runLater(() -> {
                     showErrorAlert("路线计算错误", "计算路线时发生错误: " + e.getMessage());
@@ -531,6 +550,61 @@ public class RoadTripController {
         }).start();
     }
     
+    /**
+     * 停止上一次计算仍在进行的后台改进
+     */
+    private void cancelRefinement() {
+        if (routeRefinement != null) {
+            routeRefinement.cancel();
+            routeRefinement = null;
+        }
+    }
+    
+    /**
+     * 显示一条路线：更新路线详情、总距离并重绘地图，需要在UI线程调用
+     * @param results 路线服务返回的路线描述
+     */
+    private void showRoute(List<String> results) {
+        currentRouteResults = results;
+        
+        // 解析总距离
+        for (String line : results) {
+            if (line.startsWith("Total distance:")) {
+                String distanceStr = line.substring("Total distance:".length()).trim();
+                distanceStr = distanceStr.replace(" miles", "");
+                try {
+                    totalDistance = Double.parseDouble(distanceStr);
+                } catch (NumberFormatException e) {
+                    totalDistance = 0;
+                }
+                break;
+            }
+        }
+        
+        // 提取路线城市序列
+        optimalRoute.clear();
+        for (String line : results) {
+            if (line.startsWith("Starting from: ")) {
+                optimalRoute.add(line.substring("Starting from: ".length()));
+            } else if (!line.startsWith("Total distance:") && !line.isEmpty()) {
+                String cityName = line;
+                if (line.contains(" (Visiting:")) {
+                    cityName = line.substring(0, line.indexOf(" (Visiting:"));
+                }
+                optimalRoute.add(cityName);
+            }
+        }
+        
+        // 更新路线详情列表
+        routeDetailsListView.setItems(FXCollections.observableArrayList(results));
+        
+        // 更新总距离标签
+        totalDistanceLabel.setText("总距离: " + totalDistance + " miles");
+        
+        // 重绘地图
+        redrawMap();
+    }
+    
     /**
      * 重新绘制地图
      */
@@ -559,7 +633,6 @@ public class RoadTripController {
         
         // 获取服务对象以访问图形数据
         Graph graph = routeService.getGraph();
-        Map<String, City> cityMap = routeService.getCityMap();
         Map<String, Attraction> attractionMap = routeService.getAttractionMap();
         
         // 先检查cityCoordinates中是否有数据
@@ -571,7 +644,7 @@ public class RoadTripController {
         drawAllConnections(gc, width, height, graph);
         
         // 绘制所有城市
-        drawAllCities(gc, width, height, cityMap);
+        drawAllCities(gc, width, height, graph);
         
         // 绘制所有景点
         drawAllAttractions(gc, width, height, attractionMap);
@@ -582,7 +655,7 @@ public class RoadTripController {
             drawOptimalRoute(overlayGc, width, height);
             
             // 绘制路线上的城市节点
-            drawRouteCities(overlayGc, width, height, cityMap);
+            drawRouteCities(overlayGc, width, height);
         
         // 绘制距离标签
         if (showDistanceCheckBox.isSelected()) {
@@ -630,14 +703,12 @@ public class RoadTripController {
     /**
      * 绘制所有城市
      */
-    private void drawAllCities(GraphicsContext gc, double width, double height, Map<String, City> cityMap) {
+    private void drawAllCities(GraphicsContext gc, double width, double height, Graph graph) {
         double cityRadius = 6;  // 增大城市点的大小
         Map<String, double[]> usedPositions = new HashMap<>(); // 追踪已使用的标签位置
         
         // 首先绘制普通城市（非路线城市）
-        for (Map.Entry<String, City> entry : cityMap.entrySet()) {
-            String cityName = entry.getKey();
-            
+        for (String cityName : graph.getCityNames()) {
             // 跳过路线上的城市，它们在drawRouteCities方法中单独处理
             if (optimalRoute.contains(cityName)) continue;
             
@@ -958,7 +1029,7 @@ public class RoadTripController {
     /**
      * 绘制路线上的城市节点（突出显示）
      */
-    private void drawRouteCities(GraphicsContext gc, double width, double height, Map<String, City> cityMap) {
+    private void drawRouteCities(GraphicsContext gc, double width, double height) {
         double baseRadius = 8;
         Map<String, double[]> usedPositions = new HashMap<>(); // 追踪已使用的标签位置
         
@@ -1138,7 +1209,6 @@ public class RoadTripController {
     private void drawDistanceLabels(GraphicsContext gc, double width, double height) {
         if (optimalRoute.size() < 2) return;
         
-        Map<String, City> cityMap = routeService.getCityMap();
         Graph graph = routeService.getGraph();
         
         gc.setFont(new Font("Arial", 12));
@@ -1147,8 +1217,8 @@ public class RoadTripController {
             String city1 = optimalRoute.get(i);
             String city2 = optimalRoute.get(i + 1);
             
-            // 获取两个城市之间的距离
-            int distance = graph.getDistance(city1, city2);
+            // 通过城市编号获取两个城市之间的距离
+            int distance = graph.getDistance(graph.getCityId(city1), graph.getCityId(city2));
             
             if (distance > 0) {
                 double[] coords1 = cityCoordinates.get(city1);
@@ -94,6 +94,14 @@ public class City {
         this.longitude = longitude;
     }
     
+    /**
+     * 判断城市是否设置了经纬度（默认的0,0视为未设置）
+     * @return 如果设置了经纬度则返回true
+     */
+    public boolean hasCoordinates() {
+        return latitude != 0.0 || longitude != 0.0;
+    }
+    
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,158 @@
+package com.roadtrip.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 路网的不可变紧凑快照（CSR，压缩稀疏行格式）
+ * 每个城市对应一个连续的整数编号，邻接关系存放在基本类型数组中：
+ * 城市 u 的所有邻边为 targets/weights 中 [offsets[u], offsets[u + 1]) 区间
+ */
+public final class CompactGraph {
+    private final City[] cities;               // 编号 -> 城市
+    private final Map<City, Integer> cityIds;  // 城市 -> 编号
+    private final int[] offsets;               // 每个城市邻边区间的起点，长度为城市数 + 1
+    private final int[] targets;               // 邻边指向的城市编号
+    private final int[] weights;               // 邻边长度（英里）
+    private final int maxWeight;               // 最长邻边长度
+
+    private CompactGraph(City[] cities, Map<City, Integer> cityIds,
+                         int[] offsets, int[] targets, int[] weights) {
+        this.cities = cities;
+        this.cityIds = cityIds;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+
+        int max = 0;
+        for (int weight : weights) {
+            max = Math.max(max, weight);
+        }
+        this.maxWeight = max;
+    }
+
+    /**
+     * 从邻接表图构建紧凑快照
+     * @param graph 城市路网图
+     * @return 紧凑快照
+     */
+    public static CompactGraph from(Graph graph) {
+        int n = graph.getCityCount();
+        City[] cities = new City[n];
+        Map<City, Integer> cityIds = new HashMap<>(n * 2);
+
+        // 沿用图中已分配的城市编号
+        for (int id = 0; id < n; id++) {
+            cities[id] = graph.getCity(id);
+            cityIds.put(cities[id], id);
+        }
+
+        // 统计每个城市的度数，得到区间起点
+        int[] offsets = new int[n + 1];
+        for (int u = 0; u < n; u++) {
+            offsets[u + 1] = offsets[u] + graph.neighbors(u).size();
+        }
+
+        // 填充邻边数组
+        int[] targets = new int[offsets[n]];
+        int[] weights = new int[offsets[n]];
+        for (int u = 0; u < n; u++) {
+            int e = offsets[u];
+            for (Road road : graph.neighbors(u)) {
+                targets[e] = graph.getCityId(road.getOtherCity(cities[u]));
+                weights[e] = road.getDistance();
+                e++;
+            }
+        }
+
+        return new CompactGraph(cities, cityIds, offsets, targets, weights);
+    }
+
+    /**
+     * 获取城市数量
+     * @return 城市数量
+     */
+    public int getCityCount() {
+        return cities.length;
+    }
+
+    /**
+     * 获取有向邻边数量（每条无向道路计两次）
+     * @return 邻边数量
+     */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * 获取最长邻边的长度
+     * @return 距离（英里），图中没有道路时为0
+     */
+    public int getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * 获取城市编号
+     * @param city 城市
+     * @return 城市编号，如果城市不在图中返回-1
+     */
+    public int getId(City city) {
+        Integer id = cityIds.get(city);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * 根据编号获取城市
+     * @param id 城市编号
+     * @return 城市
+     */
+    public City getCity(int id) {
+        return cities[id];
+    }
+
+    /**
+     * 获取城市 u 第一条邻边的下标
+     * @param u 城市编号
+     * @return 邻边下标
+     */
+    public int firstEdge(int u) {
+        return offsets[u];
+    }
+
+    /**
+     * 获取城市 u 最后一条邻边之后的下标
+     * @param u 城市编号
+     * @return 邻边下标（不含）
+     */
+    public int endEdge(int u) {
+        return offsets[u + 1];
+    }
+
+    /**
+     * 获取邻边指向的城市编号
+     * @param e 邻边下标
+     * @return 城市编号
+     */
+    public int target(int e) {
+        return targets[e];
+    }
+
+    /**
+     * 获取邻边长度
+     * @param e 邻边下标
+     * @return 距离（英里）
+     */
+    public int weight(int e) {
+        return weights[e];
+    }
+
+    /**
+     * 获取城市的度数
+     * @param u 城市编号
+     * @return 邻边数量
+     */
+    public int degree(int u) {
+        return offsets[u + 1] - offsets[u];
+    }
+}
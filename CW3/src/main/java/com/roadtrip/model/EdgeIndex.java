@@ -0,0 +1,108 @@
+package com.roadtrip.model;
+
+import java.util.Arrays;
+
+/**
+ * 道路索引：以两端城市编号拼接成的long为键的开放寻址哈希表
+ * 键与两端顺序无关，值为道路在图中道路表里的下标
+ */
+final class EdgeIndex {
+    private static final long EMPTY = -1L;      // 空槽标记（调用者只传入非负的城市编号，不会与真实键冲突）
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    EdgeIndex() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new int[INITIAL_CAPACITY];
+        Arrays.fill(keys, EMPTY);
+        mask = INITIAL_CAPACITY - 1;
+    }
+
+    /**
+     * 将两个城市编号拼接成与顺序无关的键
+     * @param idA 城市A的编号
+     * @param idB 城市B的编号
+     * @return 键
+     */
+    static long key(int idA, int idB) {
+        int low = Math.min(idA, idB);
+        int high = Math.max(idA, idB);
+        return ((long) low << 32) | high;
+    }
+
+    /**
+     * 查找两城市之间的道路下标
+     * @param idA 城市A的编号
+     * @param idB 城市B的编号
+     * @return 道路下标，如果不存在返回-1
+     */
+    int get(int idA, int idB) {
+        long key = key(idA, idB);
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) {
+                return values[slot];
+            }
+            if (current == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 记录两城市之间的道路下标，已有记录时保留原值
+     * @param idA 城市A的编号
+     * @param idB 城市B的编号
+     * @param value 道路下标
+     */
+    void putIfAbsent(int idA, int idB, int value) {
+        // 装载因子超过0.5时扩容
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+
+        long key = key(idA, idB);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    private int slot(long key) {
+        // 乘法散列，取高位以打散相邻编号
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != EMPTY) {
+                int slot = slot(key);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -7,24 +7,57 @@ import java.util.*;
  * 使用邻接表实现无向图
  */
 public class Graph {
-    // 邻接表：城市 -> 与该城市相连的所有道路
-    private final Map<City, List<Road>> adjacencyList;
+    // 城市表：编号 -> 城市，编号从0开始连续分配
+    private final List<City> cityTable;
+    // 城市 -> 编号
+    private final Map<City, Integer> cityIds;
+    // 城市全名（如 "New York NY"）-> 编号
+    private final Map<String, Integer> nameIndex;
+    // 邻接表：城市编号 -> 与该城市相连的所有道路
+    private final List<List<Road>> adjacencyList;
+    // 邻接表的只读视图，避免每次查询都创建包装对象
+    private final List<List<Road>> adjacencyViews;
+    // 所有道路（按添加顺序）
+    private final List<Road> roads;
+    // 道路索引：两端城市编号 -> 道路在roads中的下标
+    private final EdgeIndex edgeIndex;
+    // 最近一次生成的紧凑快照，图被修改后失效
+    private CompactGraph snapshot;
     
     /**
      * 构造函数，创建空图
      */
     public Graph() {
-        this.adjacencyList = new HashMap<>();
+        this.cityTable = new ArrayList<>();
+        this.cityIds = new HashMap<>();
+        this.nameIndex = new HashMap<>();
+        this.adjacencyList = new ArrayList<>();
+        this.adjacencyViews = new ArrayList<>();
+        this.roads = new ArrayList<>();
+        this.edgeIndex = new EdgeIndex();
     }
     
     /**
      * 向图中添加城市
      * @param city 城市
+     * @return 城市编号（城市已存在时返回已有编号）
      */
-    public void addCity(City city) {
-        if (!adjacencyList.containsKey(city)) {
-            adjacencyList.put(city, new ArrayList<>());
+    public int addCity(City city) {
+        Integer existing = cityIds.get(city);
+        if (existing != null) {
+            return existing;
         }
+        
+        int id = cityTable.size();
+        cityTable.add(city);
+        cityIds.put(city, id);
+        nameIndex.put(city.getFullName(), id);
+        
+        List<Road> roads = new ArrayList<>();
+        adjacencyList.add(roads);
+        adjacencyViews.add(Collections.unmodifiableList(roads));
+        snapshot = null;
+        return id;
     }
     
     /**
@@ -32,16 +65,31 @@ public class Graph {
      * @param road 道路
      */
     public void addRoad(Road road) {
-        City cityA = road.getCityA();
-        City cityB = road.getCityB();
-        
         // 确保两端城市都在图中
-        addCity(cityA);
-        addCity(cityB);
+        int idA = addCity(road.getCityA());
+        int idB = addCity(road.getCityB());
         
         // 将道路添加到两端城市的邻接列表中
-        adjacencyList.get(cityA).add(road);
-        adjacencyList.get(cityB).add(road);
+        adjacencyList.get(idA).add(road);
+        adjacencyList.get(idB).add(road);
+        
+        // 两城市间有多条道路时，索引保留最先添加的一条
+        edgeIndex.putIfAbsent(idA, idB, roads.size());
+        roads.add(road);
+        snapshot = null;
+    }
+    
+    /**
+     * 生成图的不可变紧凑快照（CSR格式），供最短路径查询使用
+     * 快照中的城市编号与本图的城市编号一致
+     * 图未被修改时重复调用返回同一个快照
+     * @return 紧凑快照
+     */
+    public synchronized CompactGraph freeze() {
+        if (snapshot == null) {
+            snapshot = CompactGraph.from(this);
+        }
+        return snapshot;
     }
     
     /**
@@ -49,7 +97,63 @@ public class Graph {
      * @return 城市集合
      */
     public Set<City> getCities() {
-        return Collections.unmodifiableSet(adjacencyList.keySet());
+        return Collections.unmodifiableSet(cityIds.keySet());
+    }
+    
+    /**
+     * 获取图中所有城市的全名
+     * @return 城市全名集合
+     */
+    public Set<String> getCityNames() {
+        return Collections.unmodifiableSet(nameIndex.keySet());
+    }
+    
+    /**
+     * 获取城市编号
+     * @param city 城市
+     * @return 城市编号，如果城市不在图中返回-1
+     */
+    public int getCityId(City city) {
+        Integer id = cityIds.get(city);
+        return id != null ? id : -1;
+    }
+    
+    /**
+     * 根据城市全名获取城市编号
+     * @param fullName 城市全名（如 "New York NY"）
+     * @return 城市编号，如果城市不在图中返回-1
+     */
+    public int getCityId(String fullName) {
+        Integer id = nameIndex.get(fullName);
+        return id != null ? id : -1;
+    }
+    
+    /**
+     * 根据编号获取城市
+     * @param id 城市编号
+     * @return 城市
+     */
+    public City getCity(int id) {
+        return cityTable.get(id);
+    }
+    
+    /**
+     * 根据城市全名获取城市
+     * @param fullName 城市全名（如 "New York NY"）
+     * @return 城市，如果城市不在图中返回null
+     */
+    public City getCity(String fullName) {
+        Integer id = nameIndex.get(fullName);
+        return id != null ? cityTable.get(id) : null;
+    }
+    
+    /**
+     * 获取与指定编号城市相连的所有道路
+     * @param id 城市编号
+     * @return 道路列表（只读）
+     */
+    public List<Road> neighbors(int id) {
+        return adjacencyViews.get(id);
     }
     
     /**
@@ -58,8 +162,8 @@ public class Graph {
      * @return 道路列表
      */
     public List<Road> getAdjacentRoads(City city) {
-        List<Road> roads = adjacencyList.get(city);
-        return roads != null ? Collections.unmodifiableList(roads) : Collections.emptyList();
+        Integer id = cityIds.get(city);
+        return id != null ? adjacencyViews.get(id) : Collections.emptyList();
     }
     
     /**
@@ -85,54 +189,71 @@ public class Graph {
      * @return 连接两城市的道路，如果不存在则返回null
      */
     public Road getRoadBetween(City cityA, City cityB) {
-        List<Road> roadsFromA = getAdjacentRoads(cityA);
+        int idA = getCityId(cityA);
+        int idB = getCityId(cityB);
         
-        for (Road road : roadsFromA) {
-            if (road.getOtherCity(cityA).equals(cityB)) {
-                return road;
-            }
+        if (idA < 0 || idB < 0) {
+            return null;
         }
         
-        return null;
+        return getRoadBetween(idA, idB);
+    }
+    
+    /**
+     * 获取两个编号城市之间的道路，通过道路索引在常数时间内完成
+     * @param idA 城市A的编号
+     * @param idB 城市B的编号
+     * @return 连接两城市的道路，如果编号无效或道路不存在则返回null
+     */
+    public Road getRoadBetween(int idA, int idB) {
+        // 无效编号不能进入索引：(-1, -1)拼成的键恰好等于空槽标记
+        if (!isValidId(idA) || !isValidId(idB)) {
+            return null;
+        }
+        int index = edgeIndex.get(idA, idB);
+        return index >= 0 ? roads.get(index) : null;
+    }
+    
+    /**
+     * 获取两个编号城市之间的距离
+     * @param idA 城市A的编号
+     * @param idB 城市B的编号
+     * @return 两城市之间的距离，如果编号无效或不直接相连返回-1
+     */
+    public int getDistance(int idA, int idB) {
+        if (!isValidId(idA) || !isValidId(idB)) {
+            return -1;
+        }
+        Road road = getRoadBetween(idA, idB);
+        return road != null ? road.getDistance() : -1;
+    }
+    
+    /**
+     * 判断编号是否对应图中的城市
+     * @param id 城市编号
+     * @return 编号在[0, 城市数)范围内返回true
+     */
+    private boolean isValidId(int id) {
+        return id >= 0 && id < cityTable.size();
     }
     
     /**
      * 获取两个城市之间的距离
-     * @param cityA 城市A的全名
-     * @param cityB 城市B的全名
+     * @param cityNameA 城市A的全名
+     * @param cityNameB 城市B的全名
      * @return 两城市之间的距离，如果不直接相连返回-1
      */
     public int getDistance(String cityNameA, String cityNameB) {
-        // 查找对应的城市对象
-        City cityA = null;
-        City cityB = null;
-        
-        for (City city : getCities()) {
-            if (city.toString().equals(cityNameA)) {
-                cityA = city;
-            } else if (city.toString().equals(cityNameB)) {
-                cityB = city;
-            }
-            
-            if (cityA != null && cityB != null) {
-                break;
-            }
-        }
+        // 通过名称索引查找城市编号
+        int idA = getCityId(cityNameA);
+        int idB = getCityId(cityNameB);
         
         // 如果找不到对应的城市，返回-1
-        if (cityA == null || cityB == null) {
+        if (idA < 0 || idB < 0) {
             return -1;
         }
         
-        // 获取连接两城市的道路
-        Road road = getRoadBetween(cityA, cityB);
-        
-        // 如果道路不存在，返回-1
-        if (road == null) {
-            return -1;
-        }
-        
-        return road.getDistance();
+        return getDistance(idA, idB);
     }
     
     /**
@@ -140,19 +261,10 @@ public class Graph {
      * @return 所有道路的列表
      */
     public List<Edge> getAllEdges() {
-        List<Edge> edges = new ArrayList<>();
-        Set<Road> processedRoads = new HashSet<>();
-        
-        for (Map.Entry<City, List<Road>> entry : adjacencyList.entrySet()) {
-            City city = entry.getKey();
-            for (Road road : entry.getValue()) {
-                // 避免重复添加同一条道路
-                if (!processedRoads.contains(road)) {
-                    processedRoads.add(road);
-                    City otherCity = road.getOtherCity(city);
-                    edges.add(new Edge(city.toString(), otherCity.toString(), road.getDistance()));
-                }
-            }
+        List<Edge> edges = new ArrayList<>(roads.size());
+        
+        for (Road road : roads) {
+            edges.add(new Edge(road.getCityA().toString(), road.getCityB().toString(), road.getDistance()));
         }
         
         return edges;
@@ -191,7 +303,7 @@ public class Graph {
      * @return 如果城市在图中则返回true
      */
     public boolean containsCity(City city) {
-        return adjacencyList.containsKey(city);
+        return cityIds.containsKey(city);
     }
     
     /**
@@ -199,7 +311,7 @@ public class Graph {
      * @return 城市数量
      */
     public int getCityCount() {
-        return adjacencyList.size();
+        return cityTable.size();
     }
     
     /**
@@ -207,12 +319,7 @@ public class Graph {
      * @return 道路数量（每条道路只计算一次）
      */
     public int getRoadCount() {
-        int totalRoads = 0;
-        for (List<Road> roads : adjacencyList.values()) {
-            totalRoads += roads.size();
-        }
-        // 因为每条道路在邻接表中出现两次（两端城市各一次），所以除以2
-        return totalRoads / 2;
+        return roads.size();
     }
     
     @Override
@@ -221,16 +328,16 @@ public class Graph {
         sb.append("Graph with ").append(getCityCount()).append(" cities and ")
           .append(getRoadCount()).append(" roads:\n");
         
-        for (City city : adjacencyList.keySet()) {
+        for (int id = 0; id < cityTable.size(); id++) {
+            City city = cityTable.get(id);
             sb.append(city).append(" -> ");
-            List<City> neighbors = getAdjacentCities(city);
-            for (int i = 0; i < neighbors.size(); i++) {
+            List<Road> adjacentRoads = adjacencyList.get(id);
+            for (int i = 0; i < adjacentRoads.size(); i++) {
                 if (i > 0) {
                     sb.append(", ");
                 }
-                City neighbor = neighbors.get(i);
-                Road road = getRoadBetween(city, neighbor);
-                sb.append(neighbor).append(" (").append(road.getDistance()).append(" miles)");
+                Road road = adjacentRoads.get(i);
+                sb.append(road.getOtherCity(city)).append(" (").append(road.getDistance()).append(" miles)");
             }
             sb.append("\n");
         }
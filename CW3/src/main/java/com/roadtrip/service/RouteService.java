@@ -1,15 +1,24 @@
 package com.roadtrip.service;
 
+import com.roadtrip.algorithm.BranchAndBoundTour;
+import com.roadtrip.algorithm.DijkstraAlgorithm;
+import com.roadtrip.algorithm.HeldKarpTour;
+import com.roadtrip.algorithm.IncrementalRoutePlanner;
+import com.roadtrip.algorithm.LinKernighanTour;
 import com.roadtrip.algorithm.RouteOptimizer;
+import com.roadtrip.algorithm.TourBound;
+import com.roadtrip.algorithm.TourStrategy;
 import com.roadtrip.model.Attraction;
 import com.roadtrip.model.City;
 import com.roadtrip.model.Graph;
 import com.roadtrip.util.CSVDataLoader;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -17,7 +26,6 @@ import java.util.stream.Collectors;
  */
 public class RouteService {
     private final Graph graph;
-    private final Map<String, City> cityMap;
     private final Map<String, Attraction> attractionMap;
     private final RouteOptimizer routeOptimizer;
     
@@ -28,14 +36,21 @@ public class RouteService {
     public RouteService() throws IOException {
         // 加载道路图
         this.graph = CSVDataLoader.loadRoadsGraph();
-        this.cityMap = CSVDataLoader.createCityMap(graph);
+        
+        // 加载城市经纬度（可选），供A*搜索使用
+        CSVDataLoader.loadCityCoordinates(graph);
         
         // 加载景点
         List<Attraction> attractions = CSVDataLoader.loadAttractions();
         this.attractionMap = CSVDataLoader.createAttractionMap(attractions);
         
-        // 创建路线优化器
-        this.routeOptimizer = new RouteOptimizer(graph);
+        // 创建路线优化器，城市缺少经纬度时A*会自动退化为普通Dijkstra；
+        // 景点不超过20个时用Held-Karp求最优访问顺序，更多时用有时间预算的分支定界，
+        // 超过分支定界的上限时用Lin-Kernighan风格的启发式
+        TourStrategy heuristic = new LinKernighanTour();
+        TourStrategy exact = new BranchAndBoundTour(BranchAndBoundTour.DEFAULT_TIME_BUDGET_MILLIS, heuristic);
+        TourStrategy tourStrategy = new HeldKarpTour(HeldKarpTour.DEFAULT_MAX_STOPS, exact);
+        this.routeOptimizer = new RouteOptimizer(graph, DijkstraAlgorithm.SearchMode.A_STAR, tourStrategy);
     }
     
     /**
@@ -46,9 +61,67 @@ public class RouteService {
      * @return 路线字符串列表：包含起点、景点和终点的访问顺序，以及总距离
      */
     public List<String> route(String startingCity, String endingCity, List<String> attractions) {
-        // 查找起点城市
-        City start = cityMap.get(startingCity);
-        if (start == null) {
+        List<String> errors = validate(startingCity, endingCity, attractions);
+        if (errors != null) {
+            return errors;
+        }
+        City start = graph.getCity(startingCity);
+        City end = graph.getCity(endingCity);
+        List<Attraction> attractionObjects = findAttractions(attractions);
+        
+        // 计算最优路线
+        RouteOptimizer.RouteResult result = routeOptimizer.findOptimalRoute(start, end, attractionObjects);
+        
+        if (result == null) {
+            return List.of("错误: 无法找到有效路线。请检查起点、终点和景点之间是否有可行路径。");
+        }
+        
+        return describe(start, result, attractionObjects);
+    }
+    
+    /**
+     * 在时间预算内计算路线
+     * 先把一条可行路线（贪心算法给出）传给回调，之后在后台线程中继续改进，
+     * 每得到一条更短的路线就再调用一次回调；预算用完或cancellation被取消后不再调用。
+     * 回调收到的路线可以直接逐个增删景点，沿用已经算出的距离和访问顺序
+     * 
+     * @param budget 总时间预算
+     * @param startingCity 起点城市的全名（如 "New York NY"）
+     * @param endingCity 终点城市的全名（如 "Chicago IL"）
+     * @param attractions 需要访问的景点名称列表
+     * @param cancellation 调用它的cancel()可以提前停止后台改进
+     * @param onRoute 得到路线时调用，第一次在调用线程中，之后在后台线程中
+     * @return 输入有误或找不到路线时返回错误信息，此时不会调用回调；找到路线时返回null
+     */
+    public List<String> routeWithin(Duration budget, String startingCity, String endingCity, List<String> attractions,
+                                    TourBound cancellation, Consumer<IncrementalRoute> onRoute) {
+        List<String> errors = validate(startingCity, endingCity, attractions);
+        if (errors != null) {
+            return errors;
+        }
+        City start = graph.getCity(startingCity);
+        City end = graph.getCity(endingCity);
+        List<Attraction> attractionObjects = findAttractions(attractions);
+        
+        RouteOptimizer.PlannedRoute result = routeOptimizer.findRouteWithin(start, end, attractionObjects, budget,
+                cancellation, route -> onRoute.accept(new IncrementalRoute(start, route)));
+        
+        if (result == null) {
+            return List.of("错误: 无法找到有效路线。请检查起点、终点和景点之间是否有可行路径。");
+        }
+        return null;
+    }
+    
+    /**
+     * 检查起点、终点和景点名称是否都存在
+     * @param startingCity 起点城市的全名
+     * @param endingCity 终点城市的全名
+     * @param attractions 景点名称列表
+     * @return 错误信息和建议，输入都有效时返回null
+     */
+    private List<String> validate(String startingCity, String endingCity, List<String> attractions) {
+        // 通过图的名称索引查找起点城市
+        if (graph.getCity(startingCity) == null) {
             List<String> result = new ArrayList<>();
             result.add("错误: 起点城市 \"" + startingCity + "\" 不存在。");
             
@@ -62,7 +135,7 @@ public class RouteService {
             }
             
             result.add("\n可用城市列表:");
-            List<String> allCities = new ArrayList<>(cityMap.keySet());
+            List<String> allCities = new ArrayList<>(graph.getCityNames());
             allCities.sort(String::compareTo);
             for (int i = 0; i < Math.min(10, allCities.size()); i++) {
                 result.add("- " + allCities.get(i));
@@ -74,9 +147,8 @@ public class RouteService {
             return result;
         }
         
-        // 查找终点城市
-        City end = cityMap.get(endingCity);
-        if (end == null) {
+        // 通过图的名称索引查找终点城市
+        if (graph.getCity(endingCity) == null) {
             List<String> result = new ArrayList<>();
             result.add("错误: 终点城市 \"" + endingCity + "\" 不存在。");
             
@@ -90,7 +162,7 @@ public class RouteService {
             }
             
             result.add("\n可用城市列表:");
-            List<String> allCities = new ArrayList<>(cityMap.keySet());
+            List<String> allCities = new ArrayList<>(graph.getCityNames());
             allCities.sort(String::compareTo);
             for (int i = 0; i < Math.min(10, allCities.size()); i++) {
                 result.add("- " + allCities.get(i));
@@ -102,16 +174,11 @@ public class RouteService {
             return result;
         }
         
-        // 查找所有景点
-        List<Attraction> attractionObjects = new ArrayList<>();
+        // 检查所有景点
         List<String> invalidAttractions = new ArrayList<>();
-        
         for (String attractionName : attractions) {
-            Attraction attraction = attractionMap.get(attractionName);
-            if (attraction == null) {
+            if (!attractionMap.containsKey(attractionName)) {
                 invalidAttractions.add(attractionName);
-            } else {
-                attractionObjects.add(attraction);
             }
         }
         
@@ -146,14 +213,30 @@ public class RouteService {
             return result;
         }
         
-        // 计算最优路线
-        RouteOptimizer.RouteResult result = routeOptimizer.findOptimalRoute(start, end, attractionObjects);
-        
-        if (result == null) {
-            return List.of("错误: 无法找到有效路线。请检查起点、终点和景点之间是否有可行路径。");
+        return null;
+    }
+    
+    /**
+     * 按名称查找景点
+     * @param attractions 景点名称列表，名称都必须有效
+     * @return 景点列表
+     */
+    private List<Attraction> findAttractions(List<String> attractions) {
+        List<Attraction> attractionObjects = new ArrayList<>();
+        for (String attractionName : attractions) {
+            attractionObjects.add(attractionMap.get(attractionName));
         }
-        
-        // 生成路线描述
+        return attractionObjects;
+    }
+    
+    /**
+     * 生成路线描述
+     * @param start 起点城市
+     * @param result 路线结果
+     * @param attractionObjects 需要访问的景点
+     * @return 路线字符串列表：包含起点、景点和终点的访问顺序，以及总距离
+     */
+    private List<String> describe(City start, RouteOptimizer.RouteResult result, List<Attraction> attractionObjects) {
         List<String> route = new ArrayList<>();
         List<City> path = result.getPath();
         
@@ -191,7 +274,7 @@ public class RouteService {
         // 将输入城市名称转换为小写
         String lowerCityName = cityName.toLowerCase();
         
-        return cityMap.keySet().stream()
+        return graph.getCityNames().stream()
                 .filter(city -> {
                     String lowerCity = city.toLowerCase();
                     
@@ -266,19 +349,76 @@ public class RouteService {
     }
     
     /**
-     * 获取路网图
-     * @return 路网图
+     * 可以逐个增删景点的路线，路线描述的格式同route
+     * 第一次增删景点时才以规划好的路线建立增量规划，之后每次只做一次搜索和局部调整
      */
-    public Graph getGraph() {
-        return graph;
+    public class IncrementalRoute {
+        private final City start;
+        private final RouteOptimizer.PlannedRoute seed;
+        private IncrementalRoutePlanner planner;
+        
+        private IncrementalRoute(City start, RouteOptimizer.PlannedRoute seed) {
+            this.start = start;
+            this.seed = seed;
+        }
+        
+        /**
+         * 获取当前路线
+         * @return 路线字符串列表
+         */
+        public List<String> getRoute() {
+            if (planner == null) {
+                return describe(start, seed.getRoute(), seed.getAttractions());
+            }
+            RouteOptimizer.RouteResult result = planner.getRoute();
+            if (result == null) {
+                return List.of("错误: 无法找到有效路线。请检查起点、终点和景点之间是否有可行路径。");
+            }
+            return describe(start, result, planner.getAttractions());
+        }
+        
+        /**
+         * 添加一个景点并返回新的路线
+         * @param attractionName 景点名称
+         * @return 路线字符串列表，景点名称无效时返回错误信息
+         */
+        public List<String> addAttraction(String attractionName) {
+            Attraction attraction = attractionMap.get(attractionName);
+            if (attraction == null) {
+                return List.of("错误: 景点 \"" + attractionName + "\" 不存在。");
+            }
+            planner().addAttraction(attraction);
+            return getRoute();
+        }
+        
+        /**
+         * 移除一个景点并返回新的路线
+         * @param attractionName 景点名称
+         * @return 路线字符串列表，景点名称无效时返回错误信息
+         */
+        public List<String> removeAttraction(String attractionName) {
+            Attraction attraction = attractionMap.get(attractionName);
+            if (attraction == null) {
+                return List.of("错误: 景点 \"" + attractionName + "\" 不存在。");
+            }
+            planner().removeAttraction(attraction);
+            return getRoute();
+        }
+        
+        private IncrementalRoutePlanner planner() {
+            if (planner == null) {
+                planner = new IncrementalRoutePlanner(graph, seed);
+            }
+            return planner;
+        }
     }
     
     /**
-     * 获取城市映射
-     * @return 城市名到城市对象的映射
+     * 获取路网图
+     * @return 路网图
      */
-    public Map<String, City> getCityMap() {
-        return cityMap;
+    public Graph getGraph() {
+        return graph;
     }
     
     /**
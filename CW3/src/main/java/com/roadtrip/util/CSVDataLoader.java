@@ -22,6 +22,7 @@ public class CSVDataLoader {
     
     private static final String ATTRACTIONS_FILE = "Data/attractions.csv";
     private static final String ROADS_FILE = "Data/roads.csv";
+    private static final String COORDINATES_FILE = "Data/city_coordinates.csv";
     
     /**
      * 加载景点数据
@@ -108,6 +109,55 @@ public class CSVDataLoader {
         return graph;
     }
     
+    /**
+     * 加载城市经纬度数据并写入图中的城市
+     * @param graph 城市路网图
+     * @return 成功设置经纬度的城市数量
+     * @throws IOException 如果文件读取失败
+     */
+    public static int loadCityCoordinates(Graph graph) throws IOException {
+        // 经纬度文件是可选的，缺失时城市保持无坐标状态
+        if (!Files.exists(Paths.get(COORDINATES_FILE))) {
+            return 0;
+        }
+        return loadCityCoordinates(graph, COORDINATES_FILE);
+    }
+    
+    /**
+     * 从指定文件加载城市经纬度数据并写入图中的城市
+     * 文件格式：City,Latitude,Longitude（如 "New York NY,40.71,-74.01"）
+     * @param graph 城市路网图
+     * @param filePath 文件路径
+     * @return 成功设置经纬度的城市数量
+     * @throws IOException 如果文件读取失败
+     */
+    public static int loadCityCoordinates(Graph graph, String filePath) throws IOException {
+        int count = 0;
+        Path path = Paths.get(filePath);
+        
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            // 跳过表头
+            String line = reader.readLine();
+            
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                
+                String[] parts = line.split(",");
+                if (parts.length >= 3) {
+                    // 不在路网中的城市直接忽略
+                    City city = graph.getCity(parts[0].trim());
+                    if (city != null) {
+                        city.setLatitude(Double.parseDouble(parts[1].trim()));
+                        city.setLongitude(Double.parseDouble(parts[2].trim()));
+                        count++;
+                    }
+                }
+            }
+        }
+        
+        return count;
+    }
+    
     /**
      * 创建景点名称到景点对象的映射
      * @param attractions 景点列表
@@ -121,19 +171,6 @@ public class CSVDataLoader {
         return attractionMap;
     }
     
-    /**
-     * 创建城市全名到城市对象的映射
-     * @param graph 路网图
-     * @return 城市全名 -> 城市对象 的映射
-     */
-    public static Map<String, City> createCityMap(Graph graph) {
-        Map<String, City> cityMap = new HashMap<>();
-        for (City city : graph.getCities()) {
-            cityMap.put(city.getFullName(), city);
-        }
-        return cityMap;
-    }
-    
     /**
      * 加载排序测试数据
      * @param filePath 文件路径
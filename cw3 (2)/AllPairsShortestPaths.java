@@ -0,0 +1,271 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes all-pairs shortest distances by running one Dijkstra search per source city
+ * over a sparse (CSR) adjacency, with the sources spread across a ForkJoin pool.
+ * For road networks, where each city has only a handful of roads, this costs
+ * O(n * m log n) instead of the O(n^3) of Floyd-Warshall and scales with the number of cores.
+ */
+final class AllPairsShortestPaths {
+    private static final int SOURCES_PER_TASK = 16; // Sources handled by one leaf task
+
+    private final int n;
+    private final int[] offsets; // Roads of city u are targets/weights[offsets[u] .. offsets[u + 1])
+    private final int[] targets;
+    private final int[] weights;
+    private final int inf;
+
+    /**
+     * Builds the sparse adjacency for the given undirected roads.
+     * 
+     * @param n          the number of cities
+     * @param roadFrom   the first city index of each road
+     * @param roadTo     the second city index of each road
+     * @param roadLength the length of each road
+     * @param roadCount  the number of roads
+     * @param inf        the value used for unreachable cities
+     */
+    AllPairsShortestPaths(int n, int[] roadFrom, int[] roadTo, int[] roadLength, int roadCount, int inf) {
+        this.n = n;
+        this.inf = inf;
+        
+        // Count the degree of each city, then turn the counts into start offsets
+        offsets = new int[n + 1];
+        for (int r = 0; r < roadCount; r++) {
+            offsets[roadFrom[r] + 1]++;
+            offsets[roadTo[r] + 1]++;
+        }
+        for (int u = 0; u < n; u++) {
+            offsets[u + 1] += offsets[u];
+        }
+        
+        // Each road is stored once in each direction
+        targets = new int[offsets[n]];
+        weights = new int[offsets[n]];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (int r = 0; r < roadCount; r++) {
+            int a = roadFrom[r];
+            int b = roadTo[r];
+            targets[fill[a]] = b;
+            weights[fill[a]++] = roadLength[r];
+            targets[fill[b]] = a;
+            weights[fill[b]++] = roadLength[r];
+        }
+    }
+
+    /**
+     * Fills every row of the distance matrix with the shortest distances from that row's city,
+     * and the matching row of the next-hop table. Rows are independent, so they are computed in parallel.
+     * 
+     * @param distance the n x n matrix to fill
+     * @param nextHop  the next-hop table to fill
+     */
+    void computeInto(int[][] distance, NextHopTable nextHop) {
+        ForkJoinPool.commonPool().invoke(new RowTask(distance, nextHop, null, 0, n));
+    }
+
+    /**
+     * Fills a compact symmetric distance store. Each source only writes the pairs (source, j)
+     * with j <= source, so every entry is written by exactly one task.
+     * No next-hop table is kept; paths are rebuilt from the distances with {@link #path}.
+     * 
+     * @param store the distance store to fill
+     */
+    void computeInto(CompactDistanceStore store) {
+        ForkJoinPool.commonPool().invoke(new RowTask(null, null, store, 0, n));
+    }
+
+    /**
+     * Rebuilds a shortest path from exact all-pairs distances, without any search:
+     * the next city after u is any neighbour h with w(u, h) + d(h, to) = d(u, to).
+     * 
+     * @param from  the index of the source city
+     * @param to    the index of the destination city
+     * @param store the filled distance store
+     * @return the city indices along the path, or an empty array if there is no path
+     */
+    int[] path(int from, int to, CompactDistanceStore store) {
+        if (store.get(from, to) >= inf) {
+            return new int[0];
+        }
+        
+        int[] path = new int[16];
+        int length = 0;
+        path[length++] = from;
+        for (int current = from; current != to; ) {
+            int remaining = store.get(current, to);
+            int next = -1;
+            for (int e = offsets[current]; e < offsets[current + 1] && next < 0; e++) {
+                if (weights[e] + store.get(targets[e], to) == remaining) {
+                    next = targets[e];
+                }
+            }
+            if (next < 0 || length > n) {
+                return new int[0]; // Only possible if the store does not hold shortest distances
+            }
+            
+            if (length == path.length) {
+                path = Arrays.copyOf(path, length * 2);
+            }
+            path[length++] = next;
+            current = next;
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    /**
+     * Runs Dijkstra from one source, writing the distances into the given row.
+     * 
+     * @param source  the source city index
+     * @param row     the matrix row of the source
+     * @param nextHop the next-hop table, whose row for the source is filled, or null
+     * @param heap    a scratch heap sized for all cities
+     */
+    private void computeRow(int source, int[] row, NextHopTable nextHop, MinHeap heap) {
+        Arrays.fill(row, inf);
+        row[source] = 0;
+        if (nextHop != null) {
+            nextHop.set(source, source, source);
+        }
+        heap.insertOrDecrease(source, 0);
+        
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            int currentDistance = row[u];
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int v = targets[e];
+                int newDistance = currentDistance + weights[e];
+                if (newDistance < row[v]) {
+                    row[v] = newDistance;
+                    // The first road of the path to v is the first road of the path to u, or u -> v itself
+                    if (nextHop != null) {
+                        nextHop.set(source, v, u == source ? v : nextHop.get(source, u));
+                    }
+                    heap.insertOrDecrease(v, newDistance);
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the source range in half until it is small enough to run directly.
+     * Tasks only ever run on a ForkJoinPool and are never serialized.
+     */
+    @SuppressWarnings("serial")
+    private final class RowTask extends RecursiveAction {
+        private final int[][] distance; // Matrix to fill, or null when filling a compact store
+        private final NextHopTable nextHop;
+        private final CompactDistanceStore store;
+        private final int from;
+        private final int to;
+
+        RowTask(int[][] distance, NextHopTable nextHop, CompactDistanceStore store, int from, int to) {
+            this.distance = distance;
+            this.nextHop = nextHop;
+            this.store = store;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SOURCES_PER_TASK) {
+                MinHeap heap = new MinHeap(n);
+                int[] scratch = distance == null ? new int[n] : null;
+                for (int source = from; source < to; source++) {
+                    int[] row = distance != null ? distance[source] : scratch;
+                    computeRow(source, row, nextHop, heap);
+                    if (store != null) {
+                        for (int j = 0; j <= source; j++) {
+                            store.set(source, j, row[j]);
+                        }
+                    }
+                }
+                return;
+            }
+            
+            int middle = (from + to) >>> 1;
+            invokeAll(new RowTask(distance, nextHop, store, from, middle),
+                    new RowTask(distance, nextHop, store, middle, to));
+        }
+    }
+
+    /**
+     * Binary min-heap of city indices with decrease-key, so each city is queued at most once.
+     */
+    private static final class MinHeap {
+        private final int[] nodes;     // Heap position -> city index
+        private final int[] keys;      // Heap position -> key
+        private final int[] positions; // City index -> heap position, or -1 if not queued
+        private int size;
+
+        MinHeap(int capacity) {
+            nodes = new int[capacity];
+            keys = new int[capacity];
+            positions = new int[capacity];
+            Arrays.fill(positions, -1);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void insertOrDecrease(int node, int key) {
+            int position = positions[node];
+            if (position < 0) {
+                position = size++;
+            } else if (key >= keys[position]) {
+                return;
+            }
+            
+            // Sift up
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                place(position, nodes[parent], keys[parent]);
+                position = parent;
+            }
+            place(position, node, key);
+        }
+
+        int poll() {
+            int top = nodes[0];
+            positions[top] = -1;
+            size--;
+            if (size == 0) {
+                return top;
+            }
+            
+            // Sift the last element down from the root
+            int node = nodes[size];
+            int key = keys[size];
+            int position = 0;
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= key) {
+                    break;
+                }
+                place(position, nodes[child], keys[child]);
+                position = child;
+            }
+            place(position, node, key);
+            return top;
+        }
+
+        private void place(int position, int node, int key) {
+            nodes[position] = node;
+            keys[position] = key;
+            positions[node] = position;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.stream.IntStream;
+
+/**
+ * Cache-blocked, multi-threaded Floyd-Warshall for dense distance matrices.
+ * The matrix is split into TILE x TILE tiles. For each diagonal tile in turn:
+ * the diagonal tile is closed first, then the tiles in its row and column (in parallel),
+ * then all remaining tiles (in parallel). Each tile update only reads three tiles,
+ * which stay in cache while the inner loop walks rows contiguously.
+ */
+final class BlockedFloydWarshall {
+    private static final int INF = Integer.MAX_VALUE / 2; // Unreachable, as in Graph
+    private static final int TILE = 64; // Tile edge length; three int tiles fit in a typical L1/L2 cache
+
+    private final int[][] distance;
+    private final NextHopTable nextHop;
+    private final int n;
+    private final int tiles;
+
+    private BlockedFloydWarshall(int[][] distance, NextHopTable nextHop) {
+        this.distance = distance;
+        this.nextHop = nextHop;
+        this.n = distance.length;
+        this.tiles = (n + TILE - 1) / TILE;
+    }
+
+    /**
+     * Runs Floyd-Warshall in place. Unreachable entries must hold a value no larger than
+     * Integer.MAX_VALUE / 2 so that adding two of them cannot overflow.
+     * 
+     * @param distance the n x n distance matrix, updated in place
+     * @param nextHop  the next-hop table to fill
+     */
+    static void run(int[][] distance, NextHopTable nextHop) {
+        new BlockedFloydWarshall(distance, nextHop).run();
+    }
+
+    private void run() {
+        // Every direct road is its own first hop
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i == j || distance[i][j] < INF) {
+                    nextHop.set(i, j, j);
+                }
+            }
+        }
+        
+        for (int kb = 0; kb < tiles; kb++) {
+            final int k = kb;
+            
+            // Phase 1: the diagonal tile depends only on itself
+            update(k, k, k);
+            
+            // Phase 2: tiles in row k and column k depend on themselves and the diagonal tile
+            IntStream.range(0, 2 * tiles).parallel().forEach(t -> {
+                int other = t >> 1;
+                if (other == k) {
+                    return;
+                }
+                if ((t & 1) == 0) {
+                    update(k, other, k);
+                } else {
+                    update(other, k, k);
+                }
+            });
+            
+            // Phase 3: every other tile depends on its row-k and column-k tiles, which are now final
+            IntStream.range(0, tiles * tiles).parallel().forEach(t -> {
+                int ib = t / tiles;
+                int jb = t % tiles;
+                if (ib != k && jb != k) {
+                    update(ib, jb, k);
+                }
+            });
+        }
+    }
+
+    /**
+     * Relaxes tile (ib, jb) through every intermediate city of tile column kb.
+     * The next-hop entries of the tile follow the distances; they read column k of the
+     * same rows, which belongs to a tile that is already final in this phase.
+     * 
+     * @param ib the tile row of the cities being updated
+     * @param jb the tile column of the cities being updated
+     * @param kb the tile holding the intermediate cities
+     */
+    private void update(int ib, int jb, int kb) {
+        int iEnd = Math.min(n, (ib + 1) * TILE);
+        int jStart = jb * TILE;
+        int jEnd = Math.min(n, jStart + TILE);
+        int kEnd = Math.min(n, (kb + 1) * TILE);
+        
+        for (int k = kb * TILE; k < kEnd; k++) {
+            int[] rowK = distance[k];
+            for (int i = ib * TILE; i < iEnd; i++) {
+                int[] rowI = distance[i];
+                int throughK = rowI[k];
+                // Both operands are at most INF = MAX_VALUE / 2, so the sum never overflows
+                // and a path through an unreachable city never beats an existing entry
+                for (int j = jStart; j < jEnd; j++) {
+                    int candidate = throughK + rowK[j];
+                    if (candidate < rowI[j]) {
+                        rowI[j] = candidate;
+                        nextHop.set(i, j, nextHop.get(i, k));
+                    }
+                }
+            }
+        }
+    }
+}
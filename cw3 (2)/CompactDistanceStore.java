@@ -0,0 +1,148 @@
+import java.util.Arrays;
+
+/**
+ * Memory-compact storage for a symmetric all-pairs distance table.
+ * Roads are undirected, so d(i, j) = d(j, i) and only the lower triangle (j <= i) is kept,
+ * in one flat array: about n^2 / 2 entries instead of n separate rows of n.
+ * With the 16-bit encoding each entry is a char; distances too large for it are
+ * marked with an escape code and kept in a small overflow map.
+ * Because the triangle is stored row by row, the table for n cities is a prefix of the one for n + 1,
+ * so adding a city only appends a row.
+ */
+final class CompactDistanceStore {
+    private static final char UNREACHABLE_CODE = 0xFFFF; // 16-bit code for "no path"
+    private static final char OVERFLOW_CODE = 0xFFFE; // 16-bit code for "look in the overflow map"
+    private static final long MAX_ENTRIES = Integer.MAX_VALUE - 8; // Largest array the JVM allows
+
+    private final int inf;
+    private final int[] wide; // 32-bit entries, or null when 16-bit entries are used
+    private final char[] narrow; // 16-bit entries, or null when 32-bit entries are used
+    private final LongIntMap overflow; // Entries that do not fit in 16 bits, guarded by its own monitor
+
+    /**
+     * Creates a store where every pair is unreachable except a city to itself.
+     * 
+     * @param n            the number of cities
+     * @param inf          the value used for unreachable pairs
+     * @param shortEntries whether to use the 16-bit encoding
+     */
+    CompactDistanceStore(int n, int inf, boolean shortEntries) {
+        long entries = (long) n * (n + 1) / 2;
+        if (entries > MAX_ENTRIES) {
+            throw new IllegalArgumentException("Too many cities for a compact distance store: " + n);
+        }
+        this.inf = inf;
+        
+        if (shortEntries) {
+            wide = null;
+            narrow = new char[(int) entries];
+            Arrays.fill(narrow, UNREACHABLE_CODE);
+            overflow = new LongIntMap();
+        } else {
+            wide = new int[(int) entries];
+            Arrays.fill(wide, inf);
+            narrow = null;
+            overflow = null;
+        }
+        for (int i = 0; i < n; i++) {
+            set(i, i, 0);
+        }
+    }
+
+    /**
+     * Creates a store from existing entry arrays.
+     */
+    private CompactDistanceStore(int inf, int[] wide, char[] narrow, LongIntMap overflow) {
+        this.inf = inf;
+        this.wide = wide;
+        this.narrow = narrow;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Returns a copy of this store with room for one more city, which is unreachable
+     * from every other city. The existing entries are copied unchanged.
+     * 
+     * @param n the number of cities after the new one is added
+     * @return the larger store
+     */
+    CompactDistanceStore withCity(int n) {
+        long entries = (long) n * (n + 1) / 2;
+        if (entries > MAX_ENTRIES) {
+            throw new IllegalArgumentException("Too many cities for a compact distance store: " + n);
+        }
+        
+        CompactDistanceStore grown;
+        if (wide != null) {
+            int[] entriesCopy = Arrays.copyOf(wide, (int) entries);
+            Arrays.fill(entriesCopy, wide.length, entriesCopy.length, inf);
+            grown = new CompactDistanceStore(inf, entriesCopy, null, null);
+        } else {
+            char[] entriesCopy = Arrays.copyOf(narrow, (int) entries);
+            Arrays.fill(entriesCopy, narrow.length, entriesCopy.length, UNREACHABLE_CODE);
+            synchronized (overflow) {
+                grown = new CompactDistanceStore(inf, null, entriesCopy, overflow.copy());
+            }
+        }
+        grown.set(n - 1, n - 1, 0);
+        return grown;
+    }
+
+    /**
+     * Returns the distance between two cities.
+     * 
+     * @param i the index of the first city
+     * @param j the index of the second city
+     * @return the distance, or inf if there is no path
+     */
+    int get(int i, int j) {
+        int slot = slot(i, j);
+        if (wide != null) {
+            return wide[slot];
+        }
+        
+        char code = narrow[slot];
+        if (code == UNREACHABLE_CODE) {
+            return inf;
+        }
+        if (code == OVERFLOW_CODE) {
+            synchronized (overflow) {
+                return overflow.get(slot, inf);
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Sets the distance between two cities, in both directions.
+     * Different threads may set different pairs at the same time.
+     * 
+     * @param i        the index of the first city
+     * @param j        the index of the second city
+     * @param distance the distance, or inf if there is no path
+     */
+    void set(int i, int j, int distance) {
+        int slot = slot(i, j);
+        if (wide != null) {
+            wide[slot] = distance;
+        } else if (distance >= inf) {
+            narrow[slot] = UNREACHABLE_CODE;
+        } else if (distance >= OVERFLOW_CODE) {
+            synchronized (overflow) {
+                overflow.put(slot, distance);
+            }
+            narrow[slot] = OVERFLOW_CODE;
+        } else {
+            narrow[slot] = (char) distance;
+        }
+    }
+
+    /**
+     * Maps a pair to its position in the lower triangle, row by row.
+     */
+    private static int slot(int i, int j) {
+        int high = Math.max(i, j);
+        int low = Math.min(i, j);
+        return (int) ((long) high * (high + 1) / 2) + low;
+    }
+}
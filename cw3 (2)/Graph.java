@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -6,12 +7,35 @@ import java.util.Map;
 /**
  * Represents a graph of cities connected by roads.
  * Uses an adjacency matrix to store distances between cities.
+ * The roads are also kept as a sparse edge list, which the all-pairs shortest path computation uses.
+ * Large graphs should be loaded through {@link Builder}, which allocates the matrix once at its final size,
+ * or stores the distances in a compact symmetric table instead of a matrix.
  */
 public class Graph {
     private static final int INF = Integer.MAX_VALUE / 2; // Half of MAX_VALUE to avoid overflow
+    private static final int DENSE_ROAD_FACTOR = 8; // Use Floyd-Warshall once roads reach n^2 / 8 (average degree n / 4)
+    private static final int COMPACT_CITY_THRESHOLD = 4096; // AUTO storage switches to 16-bit triangular from here
     private final List<City> cities; // List of cities in the graph
     private final Map<City, Integer> cityToIndex; // Maps cities to their indices in the matrix
-    private int[][] distance; // Adjacency matrix for distances
+    private int[][] distance; // Adjacency matrix for distances, or null when compactDistance is used
+    private CompactDistanceStore compactDistance; // Symmetric distance table, or null when the matrix is used
+    private final RoadList roads; // Sparse edge list of the distinct roads
+    private NextHopTable nextHop; // Next city on each shortest path, filled by computeShortestPaths
+    private AllPairsShortestPaths compactPaths; // Rebuilds paths from compactDistance once it holds shortest distances
+
+    /**
+     * How a graph built by {@link Builder} stores its distances.
+     */
+    public enum DistanceStorage {
+        /** MATRIX below 4096 cities, TRIANGULAR_16_BIT from there on */
+        AUTO,
+        /** Full n x n int matrix with a next-hop table; supports Floyd-Warshall */
+        MATRIX,
+        /** One flat int array holding each symmetric pair once */
+        TRIANGULAR,
+        /** Like TRIANGULAR, but with 16-bit entries and an overflow escape for longer distances */
+        TRIANGULAR_16_BIT
+    }
 
     /**
      * Constructs an empty graph.
@@ -20,6 +44,45 @@ public class Graph {
         cities = new ArrayList<>();
         cityToIndex = new HashMap<>();
         distance = new int[0][0];
+        compactDistance = null;
+        roads = new RoadList();
+    }
+
+    /**
+     * Constructs a graph from everything collected by a builder,
+     * allocating the distance storage once at its final size.
+     * 
+     * @param builder the builder holding the cities and roads
+     */
+    private Graph(Builder builder) {
+        cities = builder.cities;
+        cityToIndex = builder.cityToIndex;
+        roads = builder.roads;
+        
+        int n = cities.size();
+        DistanceStorage storage = builder.storage;
+        if (storage == DistanceStorage.AUTO) {
+            storage = n < COMPACT_CITY_THRESHOLD ? DistanceStorage.MATRIX : DistanceStorage.TRIANGULAR_16_BIT;
+        }
+        
+        if (storage != DistanceStorage.MATRIX) {
+            compactDistance = new CompactDistanceStore(n, INF, storage == DistanceStorage.TRIANGULAR_16_BIT);
+            for (int r = 0; r < roads.count; r++) {
+                compactDistance.set(roads.from[r], roads.to[r], roads.length[r]);
+            }
+            return;
+        }
+        
+        compactDistance = null;
+        distance = new int[n][n];
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(distance[i], INF);
+            distance[i][i] = 0;
+        }
+        for (int r = 0; r < roads.count; r++) {
+            distance[roads.from[r]][roads.to[r]] = roads.length[r];
+            distance[roads.to[r]][roads.from[r]] = roads.length[r];
+        }
     }
 
     /**
@@ -36,6 +99,14 @@ public class Graph {
         int index = cities.size();
         cities.add(city);
         cityToIndex.put(city, index);
+        nextHop = null; // The table has no row for the new city until paths are recomputed
+        
+        if (compactDistance != null) {
+            // The triangle only gains a row, so no full n x n copy is needed
+            compactPaths = null;
+            compactDistance = compactDistance.withCity(cities.size());
+            return index;
+        }
         
         // Resize the distance matrix to accommodate the new city
         int newSize = cities.size();
@@ -74,26 +145,50 @@ public class Graph {
         int indexA = addCity(cityA);
         int indexB = addCity(cityB);
         
-        this.distance[indexA][indexB] = distance;
-        this.distance[indexB][indexA] = distance; // Assuming roads are bidirectional
+        if (compactDistance != null) {
+            // Path rebuilding reads the road list, which no longer matches until paths are recomputed
+            compactPaths = null;
+            compactDistance.set(indexA, indexB, distance);
+        } else {
+            this.distance[indexA][indexB] = distance;
+            this.distance[indexB][indexA] = distance; // Assuming roads are bidirectional
+        }
+        
+        roads.record(indexA, indexB, distance);
     }
 
     /**
-     * Computes the shortest paths between all pairs of cities using the Floyd-Warshall algorithm.
+     * Computes the shortest paths between all pairs of cities.
+     * Sparse road networks run one Dijkstra search per city over the sparse road list, in parallel,
+     * and fill the distance matrix row by row. Dense inputs, where each city has roads to a large
+     * share of the others, use the blocked Floyd-Warshall instead.
+     * Graphs with compact distance storage always use the Dijkstra searches.
      */
     public void computeShortestPaths() {
         int n = cities.size();
-        
-        // Floyd-Warshall algorithm
-        for (int k = 0; k < n; k++) {
-            for (int i = 0; i < n; i++) {
-                for (int j = 0; j < n; j++) {
-                    if (distance[i][k] < INF && distance[k][j] < INF) {
-                        distance[i][j] = Math.min(distance[i][j], distance[i][k] + distance[k][j]);
-                    }
-                }
-            }
+        if (compactDistance != null) {
+            compactPaths = new AllPairsShortestPaths(n, roads.from, roads.to, roads.length, roads.count, INF);
+            compactPaths.computeInto(compactDistance);
+        } else if ((long) roads.count * DENSE_ROAD_FACTOR >= (long) n * n) {
+            computeShortestPathsFloydWarshall();
+        } else {
+            nextHop = new NextHopTable(n);
+            new AllPairsShortestPaths(n, roads.from, roads.to, roads.length, roads.count, INF).computeInto(distance, nextHop);
+        }
+    }
+
+    /**
+     * Computes the shortest paths between all pairs of cities using the Floyd-Warshall algorithm.
+     * The matrix is processed in cache-sized tiles, with the tiles of each phase updated in parallel.
+     * 
+     * @throws UnsupportedOperationException if the graph uses compact distance storage
+     */
+    public void computeShortestPathsFloydWarshall() {
+        if (compactDistance != null) {
+            throw new UnsupportedOperationException("Floyd-Warshall needs the full distance matrix");
         }
+        nextHop = new NextHopTable(cities.size());
+        BlockedFloydWarshall.run(distance, nextHop);
     }
 
     /**
@@ -111,7 +206,39 @@ public class Graph {
             return INF;
         }
         
-        return distance[fromIndex][toIndex];
+        return compactDistance != null ? compactDistance.get(fromIndex, toIndex) : distance[fromIndex][toIndex];
+    }
+
+    /**
+     * Returns the cities along a shortest path between two cities, including both ends.
+     * The path is rebuilt from the next-hop table in O(path length), without any search.
+     * With compact distance storage there is no next-hop table; each step instead picks
+     * the neighbouring city whose road length plus remaining distance matches.
+     * 
+     * @param from the source city
+     * @param to   the destination city
+     * @return the cities along the path, or an empty list if there is no path
+     * @throws IllegalStateException if the shortest paths have not been computed yet
+     */
+    public List<City> getShortestPath(City from, City to) {
+        if (nextHop == null && compactPaths == null) {
+            throw new IllegalStateException("Shortest paths have not been computed");
+        }
+        
+        Integer fromIndex = cityToIndex.get(from);
+        Integer toIndex = cityToIndex.get(to);
+        List<City> path = new ArrayList<>();
+        if (fromIndex == null || toIndex == null) {
+            return path;
+        }
+        
+        int[] indices = nextHop != null
+                ? nextHop.path(fromIndex, toIndex)
+                : compactPaths.path(fromIndex, toIndex, compactDistance);
+        for (int index : indices) {
+            path.add(cities.get(index));
+        }
+        return path;
     }
 
     /**
@@ -155,4 +282,121 @@ public class Graph {
     public List<City> getCities() {
         return new ArrayList<>(cities);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Collects cities and roads first and builds the graph in one step.
+     * Unlike adding cities to a Graph one at a time, which copies the whole matrix
+     * on every new city, loading n cities this way costs time linear in the input
+     * plus a single n x n allocation.
+     */
+    public static class Builder {
+        private final List<City> cities = new ArrayList<>();
+        private final Map<City, Integer> cityToIndex = new HashMap<>();
+        private final RoadList roads = new RoadList();
+        private DistanceStorage storage = DistanceStorage.AUTO;
+        private boolean built;
+
+        /**
+         * Chooses how the built graph stores its distances.
+         * 
+         * @param storage the distance storage, AUTO by default
+         * @return this builder
+         */
+        public Builder distanceStorage(DistanceStorage storage) {
+            checkNotBuilt();
+            this.storage = storage;
+            return this;
+        }
+
+        /**
+         * Adds a city if it hasn't been added yet.
+         * 
+         * @param city the city to add
+         * @return the index the city will have in the graph
+         */
+        public int addCity(City city) {
+            checkNotBuilt();
+            Integer index = cityToIndex.get(city);
+            if (index != null) {
+                return index;
+            }
+            
+            cities.add(city);
+            cityToIndex.put(city, cities.size() - 1);
+            return cities.size() - 1;
+        }
+
+        /**
+         * Adds a road between two cities, adding the cities if needed.
+         * A repeated road between the same two cities replaces the earlier distance.
+         * 
+         * @param cityA    the first city
+         * @param cityB    the second city
+         * @param distance the distance between the cities
+         */
+        public void addRoad(City cityA, City cityB, int distance) {
+            int indexA = addCity(cityA);
+            int indexB = addCity(cityB);
+            roads.record(indexA, indexB, distance);
+        }
+
+        /**
+         * Builds the graph. The builder cannot be used afterwards.
+         * 
+         * @return the graph with all collected cities and roads
+         */
+        public Graph build() {
+            checkNotBuilt();
+            built = true;
+            return new Graph(this);
+        }
+
+        private void checkNotBuilt() {
+            if (built) {
+                throw new IllegalStateException("Graph has already been built");
+            }
+        }
+    }
+
+    /**
+     * Growable edge list of the distinct roads, in the order they were first added.
+     */
+    private static final class RoadList {
+        private final LongIntMap index = new LongIntMap(); // Maps a city index pair to its slot
+        private int[] from = new int[16]; // First city index of each road
+        private int[] to = new int[16]; // Second city index of each road
+        private int[] length = new int[16]; // Length of each road
+        private int count; // Number of distinct roads
+
+        /**
+         * Records a road. A repeated road between the same two cities replaces
+         * the earlier length, matching the adjacency matrix.
+         * 
+         * @param indexA   the index of the first city
+         * @param indexB   the index of the second city
+         * @param distance the length of the road
+         */
+        void record(int indexA, int indexB, int distance) {
+            if (indexA == indexB) {
+                return; // A road from a city to itself never shortens a path
+            }
+            
+            long key = ((long) Math.min(indexA, indexB) << 32) | Math.max(indexA, indexB);
+            int slot = index.get(key, -1);
+            if (slot >= 0) {
+                length[slot] = distance;
+                return;
+            }
+            
+            if (count == from.length) {
+                from = Arrays.copyOf(from, count * 2);
+                to = Arrays.copyOf(to, count * 2);
+                length = Arrays.copyOf(length, count * 2);
+            }
+            from[count] = indexA;
+            to[count] = indexB;
+            length[count] = distance;
+            index.put(key, count++);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from non-negative long keys to int values, without boxing.
+ * Keys and values sit in two parallel arrays probed linearly; the table doubles once half full.
+ * Not thread-safe: callers that share one map between threads must synchronize on it.
+ */
+final class LongIntMap {
+    private static final long EMPTY = -1L; // Marks a free slot; real keys are never negative
+
+    private long[] keys = newKeys(16);
+    private int[] values = new int[16];
+    private int size;
+
+    /**
+     * Returns the value stored for a key.
+     * 
+     * @param key     the key to look up
+     * @param missing the value to return if the key is not present
+     * @return the stored value, or missing
+     */
+    int get(long key, int missing) {
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Stores a value for a key, replacing any earlier value.
+     * 
+     * @param key   the key, which must not be negative
+     * @param value the value to store
+     */
+    void put(long key, int value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative key: " + key);
+        }
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (keys[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == EMPTY) {
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+    }
+
+    /**
+     * Returns a copy of this map that can be changed independently.
+     * 
+     * @return the copy
+     */
+    LongIntMap copy() {
+        LongIntMap copy = new LongIntMap();
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Doubles the table and reinserts every entry.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = newKeys(oldKeys.length * 2);
+        values = new int[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static long[] newKeys(int capacity) {
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    /**
+     * Mixes the key bits so that keys differing only in their high word still spread out.
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Stores, for every pair of cities (i, j), the next city after i on a shortest path from i to j.
+ * A full path is rebuilt by following next hops, in O(path length) and without any search.
+ * Entries are kept in one flat array as (index + 1), with 0 meaning "no path".
+ * When every city index fits in 16 bits the array is a char[], half the size of the int distance matrix.
+ */
+final class NextHopTable {
+    private static final int NONE = -1; // Returned when there is no path
+
+    private final int n;
+    private final char[] narrow; // Used when every index + 1 fits in a char
+    private final int[] wide; // Used for larger graphs
+
+    /**
+     * Creates a table with no paths recorded.
+     * 
+     * @param n the number of cities
+     */
+    NextHopTable(int n) {
+        if ((long) n * n > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many cities for a next-hop table: " + n);
+        }
+        this.n = n;
+        if (n < Character.MAX_VALUE) {
+            narrow = new char[n * n];
+            wide = null;
+        } else {
+            narrow = null;
+            wide = new int[n * n];
+        }
+    }
+
+    /**
+     * Returns the next city after from on a shortest path to to.
+     * 
+     * @param from the index of the current city
+     * @param to   the index of the destination city
+     * @return the index of the next city, or -1 if there is no path
+     */
+    int get(int from, int to) {
+        int slot = from * n + to;
+        return (narrow != null ? narrow[slot] : wide[slot]) - 1;
+    }
+
+    /**
+     * Records the next city after from on a shortest path to to.
+     * 
+     * @param from the index of the current city
+     * @param to   the index of the destination city
+     * @param hop  the index of the next city
+     */
+    void set(int from, int to, int hop) {
+        int slot = from * n + to;
+        if (narrow != null) {
+            narrow[slot] = (char) (hop + 1);
+        } else {
+            wide[slot] = hop + 1;
+        }
+    }
+
+    /**
+     * Returns the city indices of a shortest path, including both ends.
+     * 
+     * @param from the index of the source city
+     * @param to   the index of the destination city
+     * @return the city indices along the path, or an empty array if there is no path
+     */
+    int[] path(int from, int to) {
+        // Count the hops first so the result is allocated once
+        int length = 1;
+        for (int current = from; current != to; length++) {
+            current = get(current, to);
+            if (current == NONE || length > n) {
+                return new int[0];
+            }
+        }
+        
+        int[] path = new int[length];
+        path[0] = from;
+        for (int i = 1; i < length; i++) {
+            path[i] = get(path[i - 1], to);
+        }
+        return path;
+    }
+}
@@ -181,7 +181,7 @@ public class RoadTripPlanner {
             System.out.println("   - Space Complexity: O(V²)");
             
             // 步骤3：路线优化算法
-            if (attractions.size() < 10) {
+            if (attractions.size() < 13) {
                 System.out.println("\n3. Permutation-Based Route Optimization");
                 System.out.println("   - Time Complexity: O(k!), where k = " + attractions.size() + " (number of attractions)");
                 System.out.println("   - Space Complexity: O(k)");
@@ -197,7 +197,7 @@ public class RoadTripPlanner {
             
             // 总体复杂度
             System.out.println("\nOverall Algorithm Complexity:");
-            if (attractions.size() < 10) {
+            if (attractions.size() < 13) {
                 System.out.println("Time: O(V³ + k!), dominated by " + (attractions.size() >= 3 ? "k!" : "V³"));
                 System.out.println("Space: O(V² + k), dominated by V²");
             } else {
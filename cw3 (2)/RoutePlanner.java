@@ -1,11 +1,15 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Plans routes between cities, visiting all specified attractions.
@@ -15,36 +19,41 @@ public class RoutePlanner {
     private final Map<String, City> attractionsMap;
     private final String attractionsFilePath;
     private final String roadsFilePath;
-    private static final int TSP_THRESHOLD = 10; // Use TSP for 10 or more attractions
+    private static final int TSP_THRESHOLD = 13; // Use TSP for 13 or more attractions
 
     /**
      * Constructs a RoutePlanner with the specified file paths.
      * 
      * @param attractionsFilePath the path to the attractions CSV file
      * @param roadsFilePath       the path to the roads CSV file
+     * @throws UncheckedIOException if either file cannot be read
      */
     public RoutePlanner(String attractionsFilePath, String roadsFilePath) {
-        this.graph = new Graph();
         this.attractionsMap = new HashMap<>();
         this.attractionsFilePath = attractionsFilePath;
         this.roadsFilePath = roadsFilePath;
         
+        // Collect all cities and roads first, so the distance matrix is allocated only once
+        Graph.Builder builder = new Graph.Builder();
         try {
-            parseAttractionsCSV();
-            parseRoadsCSV();
-            graph.computeShortestPaths();
+            parseAttractionsCSV(builder);
+            parseRoadsCSV(builder);
         } catch (IOException e) {
-            System.err.println("Error initializing RoutePlanner: " + e.getMessage());
-            e.printStackTrace();
+            // A half-loaded graph would give wrong routes, so do not compute paths on it
+            throw new UncheckedIOException("Error initializing RoutePlanner: " + e.getMessage(), e);
         }
+        
+        this.graph = builder.build();
+        graph.computeShortestPaths();
     }
 
     /**
      * Parses the attractions CSV file to populate the attractions map.
      * 
+     * @param builder the graph builder that receives the attraction cities
      * @throws IOException if an I/O error occurs
      */
-    private void parseAttractionsCSV() throws IOException {
+    private void parseAttractionsCSV(Graph.Builder builder) throws IOException {
         try (BufferedReader reader = new BufferedReader(new FileReader(attractionsFilePath))) {
             // Skip header line
             String line = reader.readLine();
@@ -70,7 +79,7 @@ public class RoutePlanner {
                         
                         City city = new City(cityName, state);
                         attractionsMap.put(attraction, city);
-                        graph.addCity(city); // Add the city to the graph
+                        builder.addCity(city); // Add the city to the graph
                     }
                 }
             }
@@ -80,9 +89,10 @@ public class RoutePlanner {
     /**
      * Parses the roads CSV file to populate the graph.
      * 
+     * @param builder the graph builder that receives the roads
      * @throws IOException if an I/O error occurs
      */
-    private void parseRoadsCSV() throws IOException {
+    private void parseRoadsCSV(Graph.Builder builder) throws IOException {
         try (BufferedReader reader = new BufferedReader(new FileReader(roadsFilePath))) {
             // Skip header line
             String line = reader.readLine();
@@ -97,7 +107,7 @@ public class RoutePlanner {
                     City cityA = parseCityString(cityAStr);
                     City cityB = parseCityString(cityBStr);
                     
-                    graph.addRoad(cityA, cityB, distance);
+                    builder.addRoad(cityA, cityB, distance);
                 }
             }
         }
@@ -154,22 +164,51 @@ public class RoutePlanner {
             List<City> directPath = new ArrayList<>();
             directPath.add(startCity);
             directPath.add(endCity);
-            return new RouteResult(directPath, graph.getShortestDistance(startCity, endCity));
+            return withRoadPaths(new RouteResult(directPath, graph.getShortestDistance(startCity, endCity)));
         }
         
         // Choose the appropriate algorithm based on the number of attractions
         if (citiesToVisit.size() >= TSP_THRESHOLD) {
             System.out.println("Using TSP algorithm for " + citiesToVisit.size() + " attractions");
-            return TSPOptimizer.optimizeRoute(graph, startCity, endCity, citiesToVisit);
+            return withRoadPaths(TSPOptimizer.optimizeRouteLean(graph, startCity, endCity, citiesToVisit));
         } else {
             // For smaller numbers of attractions, use the permutation-based approach
-            return findOptimalRoute(startCity, endCity, citiesToVisit);
+            return withRoadPaths(findOptimalRoute(startCity, endCity, citiesToVisit));
         }
     }
 
+    /**
+     * Expands a route given as a sequence of stops into the full city-by-city road path.
+     * Each leg is rebuilt from the graph's next-hop table, so no extra searches are needed.
+     * Consecutive stops in the same city collapse into one city.
+     * 
+     * @param stops the route with only its stops in visiting order
+     * @return the route with every city passed through, and the same total distance
+     */
+    private RouteResult withRoadPaths(RouteResult stops) {
+        List<City> stopPath = stops.getPath();
+        List<City> roadPath = new ArrayList<>();
+        roadPath.add(stopPath.get(0));
+        
+        for (int i = 1; i < stopPath.size(); i++) {
+            List<City> leg = graph.getShortestPath(stopPath.get(i - 1), stopPath.get(i));
+            if (leg.isEmpty()) {
+                // No road connection is known; keep the stop so the route still lists it
+                roadPath.add(stopPath.get(i));
+            } else {
+                roadPath.addAll(leg.subList(1, leg.size()));
+            }
+        }
+        
+        return new RouteResult(roadPath, stops.getTotalDistance());
+    }
+
     /**
      * Finds the optimal route from start to end, visiting all cities in the citiesToVisit list.
-     * Uses a permutation-based approach suitable for small numbers of attractions.
+     * Orders are enumerated depth-first in place, so memory stays O(k), and a branch is cut as soon as
+     * its length so far plus the direct distance on to the end exceeds the best complete route.
+     * Shortest distances obey the triangle inequality, so that bound never cuts off a shorter route.
+     * Each choice of first stop is searched as its own task in the common ForkJoin pool.
      * 
      * @param start        the starting city
      * @param end          the ending city
@@ -177,75 +216,124 @@ public class RoutePlanner {
      * @return the optimal route result
      */
     private RouteResult findOptimalRoute(City start, City end, List<City> citiesToVisit) {
-        List<List<City>> permutations = generatePermutations(citiesToVisit);
-        
-        double minDistance = Double.MAX_VALUE;
-        List<City> bestPath = null;
+        int k = citiesToVisit.size();
         
-        for (List<City> permutation : permutations) {
-            double totalDistance = 0;
-            List<City> fullPath = new ArrayList<>();
-            fullPath.add(start);
-            
-            // Calculate distance from start to first city
-            totalDistance += graph.getShortestDistance(start, permutation.get(0));
-            
-            // Add intermediate cities
-            fullPath.addAll(permutation);
-            
-            // Calculate distances between intermediate cities
-            for (int i = 0; i < permutation.size() - 1; i++) {
-                totalDistance += graph.getShortestDistance(permutation.get(i), permutation.get(i + 1));
-            }
-            
-            // Calculate distance from last city to end
-            totalDistance += graph.getShortestDistance(permutation.get(permutation.size() - 1), end);
-            
-            fullPath.add(end);
-            
-            if (totalDistance < minDistance) {
-                minDistance = totalDistance;
-                bestPath = fullPath;
+        // Local distance matrix: 0 is the start, 1..k the stops, k + 1 the end
+        List<City> stops = new ArrayList<>(k + 2);
+        stops.add(start);
+        stops.addAll(citiesToVisit);
+        stops.add(end);
+        int[][] distance = new int[k + 2][k + 2];
+        for (int i = 0; i < k + 2; i++) {
+            for (int j = 0; j < k + 2; j++) {
+                distance[i][j] = graph.getShortestDistance(stops.get(i), stops.get(j));
             }
         }
         
-        return new RouteResult(bestPath, minDistance);
+        PermutationSearch search = new PermutationSearch(distance, k);
+        ForkJoinPool.commonPool().invoke(search);
+        
+        List<City> bestPath = new ArrayList<>(k + 2);
+        bestPath.add(start);
+        for (int stop : search.bestOrder) {
+            bestPath.add(stops.get(stop));
+        }
+        bestPath.add(end);
+        return new RouteResult(bestPath, search.bestDistance.get());
     }
 
     /**
-     * Generates all permutations of the given list of cities.
-     * 
-     * @param cities the list of cities
-     * @return a list of all permutations
+     * Exhaustive search over the visiting orders of the stops, pruned against the best route found so far.
+     * The root task forks one subtask per first stop; every subtask shares the incumbent.
+     * Tasks only ever run on a ForkJoinPool and are never serialized.
      */
-    private List<List<City>> generatePermutations(List<City> cities) {
-        List<List<City>> result = new ArrayList<>();
-        generatePermutationsHelper(cities, 0, result);
-        return result;
-    }
+    @SuppressWarnings("serial")
+    private static final class PermutationSearch extends RecursiveAction {
+        private final int[][] distance; // Local distances: 0 is the start, 1..k the stops, k + 1 the end
+        private final int k;
+        private final int first; // First stop of this branch, or 0 for the root task
+        private final AtomicLong bestDistance;
+        private int[] bestOrder; // Kept on the root task only, guarded by its monitor
 
-    /**
-     * Helper method for generating permutations.
-     * 
-     * @param cities the list of cities
-     * @param start  the start index
-     * @param result the list to store permutations
-     */
-    private void generatePermutationsHelper(List<City> cities, int start, List<List<City>> result) {
-        if (start == cities.size() - 1) {
-            result.add(new ArrayList<>(cities));
-            return;
+        private final PermutationSearch root;
+
+        PermutationSearch(int[][] distance, int k) {
+            this.distance = distance;
+            this.k = k;
+            this.first = 0;
+            this.bestDistance = new AtomicLong(Long.MAX_VALUE);
+            this.root = this;
         }
-        
-        for (int i = start; i < cities.size(); i++) {
-            // Swap
-            Collections.swap(cities, start, i);
+
+        private PermutationSearch(PermutationSearch root, int first) {
+            this.distance = root.distance;
+            this.k = root.k;
+            this.first = first;
+            this.bestDistance = root.bestDistance;
+            this.root = root;
+        }
+
+        @Override
+        protected void compute() {
+            if (first == 0) {
+                List<PermutationSearch> branches = new ArrayList<>(k);
+                for (int stop = 1; stop <= k; stop++) {
+                    branches.add(new PermutationSearch(this, stop));
+                }
+                invokeAll(branches);
+                return;
+            }
             
-            // Recursively generate permutations for the rest
-            generatePermutationsHelper(cities, start + 1, result);
+            int[] order = new int[k];
+            boolean[] used = new boolean[k + 1];
+            order[0] = first;
+            used[first] = true;
+            search(order, used, 1, distance[0][first]);
+        }
+
+        /**
+         * Extends a partial order by every unused stop in turn.
+         * 
+         * @param order  the stops chosen so far, in the first depth positions
+         * @param used   which stops are already in the order
+         * @param depth  the number of stops chosen
+         * @param length the length of the route so far
+         */
+        private void search(int[] order, boolean[] used, int depth, long length) {
+            int last = order[depth - 1];
+            if (length + distance[last][k + 1] > bestDistance.get()) {
+                return;
+            }
+            if (depth == k) {
+                offer(order, length + distance[last][k + 1]);
+                return;
+            }
             
-            // Backtrack (swap back)
-            Collections.swap(cities, start, i);
+            for (int stop = 1; stop <= k; stop++) {
+                if (!used[stop]) {
+                    used[stop] = true;
+                    order[depth] = stop;
+                    search(order, used, depth + 1, length + distance[last][stop]);
+                    used[stop] = false;
+                }
+            }
+        }
+
+        /**
+         * Records a complete route if it beats the incumbent. Equal lengths keep the
+         * lexicographically smaller order, so the result does not depend on thread timing.
+         * 
+         * @param order  the complete visiting order
+         * @param length the route length
+         */
+        private void offer(int[] order, long length) {
+            synchronized (root) {
+                long best = bestDistance.get();
+                if (length < best || (length == best && Arrays.compare(order, root.bestOrder) < 0)) {
+                    root.bestOrder = order.clone();
+                    bestDistance.set(length);
+                }
+            }
         }
     }
 
@@ -0,0 +1,258 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Regression checks for the route searches.
+ * A seeded random road network is written to temporary CSV files and loaded through RoutePlanner,
+ * so both the pruned permutation search (fewer than 13 attractions) and the memory-lean Held-Karp
+ * (13 or more) run exactly as they do for the real data. Their totals are compared with brute force
+ * and with the original Held-Karp in TSPOptimizer, one way and as round trips.
+ * Graphs in every distance storage are also queried, given new cities and roads, and queried again.
+ * Exits with status 1 if any check fails.
+ */
+public class RoutePlannerChecks {
+    private static final long SEED = 42;
+    private static final int CITY_COUNT = 80;
+    private static final int ROADS_PER_CITY = 3;
+
+    private static int checks;
+    private static int failures;
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(SEED);
+        Path directory = Files.createTempDirectory("route-checks");
+        Path attractionsFile = directory.resolve("attractions.csv");
+        Path roadsFile = directory.resolve("roads.csv");
+        List<City> cities = writeRandomNetwork(random, attractionsFile, roadsFile);
+        
+        try {
+            RoutePlanner planner = new RoutePlanner(attractionsFile.toString(), roadsFile.toString());
+            
+            System.out.println("\n===== Permutation search against brute force =====");
+            checkRoutes(planner, cities, random, 1, 9);
+            
+            System.out.println("\n===== Lean Held-Karp against the original Held-Karp =====");
+            checkRoutes(planner, cities, random, 13, 15);
+            checkLeanFallback(planner.getGraph(), cities, random);
+        } finally {
+            Files.deleteIfExists(attractionsFile);
+            Files.deleteIfExists(roadsFile);
+            Files.deleteIfExists(directory);
+        }
+        
+        System.out.println("\n===== Adding cities and roads after a query =====");
+        for (Graph.DistanceStorage storage : Graph.DistanceStorage.values()) {
+            checkAddRoadAfterQuery(storage);
+        }
+        
+        System.out.println("\n" + (checks - failures) + " of " + checks + " checks passed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Plans routes through random attractions and compares them with an exact reference:
+     * brute force for up to 8 stops, otherwise the original Held-Karp. Every third route is a round trip.
+     * 
+     * @param planner  the planner loaded from the random network
+     * @param cities   the cities of the network, attraction i being in city i
+     * @param random   the random source
+     * @param minStops the fewest attractions to visit
+     * @param maxStops the most attractions to visit
+     */
+    private static void checkRoutes(RoutePlanner planner, List<City> cities, Random random, int minStops, int maxStops) {
+        Graph graph = planner.getGraph();
+        for (int trial = 0; trial < 24; trial++) {
+            int k = minStops + trial % (maxStops - minStops + 1);
+            boolean roundTrip = trial % 3 == 0;
+            
+            List<Integer> shuffled = new ArrayList<>();
+            for (int i = 0; i < cities.size(); i++) {
+                shuffled.add(i);
+            }
+            Collections.shuffle(shuffled, random);
+            City start = cities.get(shuffled.get(0));
+            City end = roundTrip ? start : cities.get(shuffled.get(1));
+            List<String> attractions = new ArrayList<>();
+            List<City> stops = new ArrayList<>();
+            for (int i : shuffled.subList(2, 2 + k)) {
+                attractions.add(attractionName(i));
+                stops.add(cities.get(i));
+            }
+            
+            RouteResult route = planner.route(cityName(start), cityName(end), attractions);
+            double optimum = k <= 8
+                    ? bruteForce(graph, start, end, stops)
+                    : TSPOptimizer.optimizeRoute(graph, start, end, stops).getTotalDistance();
+            check(k + " stops" + (roundTrip ? ", round trip" : ""),
+                    route.getTotalDistance() == optimum && isValidRoute(graph, route, start, end, stops));
+        }
+    }
+
+    /**
+     * With a memory budget too small for the tables, the lean solver falls back to a
+     * nearest-neighbour route, which must still be a valid route no shorter than the optimum.
+     */
+    private static void checkLeanFallback(Graph graph, List<City> cities, Random random) {
+        List<City> shuffled = new ArrayList<>(cities);
+        Collections.shuffle(shuffled, random);
+        City start = shuffled.get(0);
+        List<City> stops = shuffled.subList(1, 15);
+        
+        RouteResult fallback = TSPOptimizer.optimizeRouteLean(graph, start, start, stops, 1024);
+        RouteResult optimal = TSPOptimizer.optimizeRouteLean(graph, start, start, stops);
+        check("lean fallback, round trip",
+                fallback.getTotalDistance() >= optimal.getTotalDistance()
+                        && isValidRoute(graph, fallback, start, start, stops)
+                        && isValidRoute(graph, optimal, start, start, stops));
+    }
+
+    /**
+     * Builds a chain of cities, queries it, then adds a city and two shortcuts and queries again.
+     * The second query must use the shortcuts, whatever the distance storage.
+     * 
+     * @param storage the distance storage to check
+     */
+    private static void checkAddRoadAfterQuery(Graph.DistanceStorage storage) {
+        Graph.Builder builder = new Graph.Builder().distanceStorage(storage);
+        City[] chain = new City[12];
+        for (int i = 0; i < chain.length; i++) {
+            chain[i] = new City("Chain " + i, "XX");
+        }
+        for (int i = 1; i < chain.length; i++) {
+            builder.addRoad(chain[i - 1], chain[i], 40000); // Long enough to need the 16-bit overflow entries
+        }
+        Graph graph = builder.build();
+        graph.computeShortestPaths();
+        
+        City first = chain[0];
+        City last = chain[chain.length - 1];
+        boolean before = graph.getShortestDistance(first, last) == 440000
+                && graph.getShortestPath(first, last).size() == chain.length;
+        
+        City bypass = new City("Bypass", "XX");
+        graph.addRoad(first, bypass, 150000);
+        graph.addRoad(bypass, last, 150000);
+        graph.addRoad(chain[3], chain[8], 5);
+        graph.computeShortestPaths();
+        boolean after = graph.getShortestDistance(first, last) == 240005
+                && graph.getShortestPath(first, last).size() == 8
+                && graph.getShortestDistance(bypass, chain[5]) == 350000;
+        check("add road after query, " + storage, before && after);
+    }
+
+    /**
+     * Writes a connected random network: each city is joined to its nearest few cities and to the
+     * previous city. Attraction i is in city i.
+     * 
+     * @return the cities, in index order
+     */
+    private static List<City> writeRandomNetwork(Random random, Path attractionsFile, Path roadsFile) throws IOException {
+        List<City> cities = new ArrayList<>();
+        double[] x = new double[CITY_COUNT];
+        double[] y = new double[CITY_COUNT];
+        for (int i = 0; i < CITY_COUNT; i++) {
+            x[i] = random.nextDouble() * 2000;
+            y[i] = random.nextDouble() * 2000;
+            cities.add(new City("City " + i, "XX"));
+        }
+        
+        try (PrintWriter attractions = new PrintWriter(Files.newBufferedWriter(attractionsFile));
+             PrintWriter roads = new PrintWriter(Files.newBufferedWriter(roadsFile))) {
+            attractions.println("Attraction,Location");
+            roads.println("CityA,CityB,Distance");
+            for (int i = 0; i < CITY_COUNT; i++) {
+                attractions.println(attractionName(i) + "," + cityName(cities.get(i)));
+                
+                Integer[] byDistance = new Integer[CITY_COUNT];
+                for (int j = 0; j < CITY_COUNT; j++) {
+                    byDistance[j] = j;
+                }
+                final int from = i;
+                Arrays.sort(byDistance, (a, b) -> Double.compare(
+                        Math.hypot(x[from] - x[a], y[from] - y[a]), Math.hypot(x[from] - x[b], y[from] - y[b])));
+                for (int n = 1; n <= ROADS_PER_CITY; n++) {
+                    int to = byDistance[n];
+                    roads.println(cityName(cities.get(i)) + "," + cityName(cities.get(to)) + ","
+                            + (1 + Math.round(Math.hypot(x[i] - x[to], y[i] - y[to]))));
+                }
+                if (i > 0) {
+                    roads.println(cityName(cities.get(i - 1)) + "," + cityName(cities.get(i)) + ","
+                            + (1 + Math.round(Math.hypot(x[i] - x[i - 1], y[i] - y[i - 1]))));
+                }
+            }
+        }
+        return cities;
+    }
+
+    private static String attractionName(int i) {
+        return "Attraction " + i;
+    }
+
+    private static String cityName(City city) {
+        return city.getName() + " " + city.getState();
+    }
+
+    /**
+     * Tries every visiting order.
+     * 
+     * @return the shortest total distance from start through all stops to end
+     */
+    private static double bruteForce(Graph graph, City start, City end, List<City> stops) {
+        return permute(graph, start, end, new ArrayList<>(stops), 0);
+    }
+
+    private static double permute(Graph graph, City start, City end, List<City> order, int position) {
+        if (position == order.size()) {
+            double total = 0;
+            City previous = start;
+            for (City stop : order) {
+                total += graph.getShortestDistance(previous, stop);
+                previous = stop;
+            }
+            return total + graph.getShortestDistance(previous, end);
+        }
+        
+        double best = Double.MAX_VALUE;
+        for (int i = position; i < order.size(); i++) {
+            Collections.swap(order, position, i);
+            best = Math.min(best, permute(graph, start, end, order, position + 1));
+            Collections.swap(order, position, i);
+        }
+        return best;
+    }
+
+    /**
+     * Checks that a route runs from start to end through every stop, and that its legs,
+     * each a shortest path between neighbouring cities, add up to the total.
+     */
+    private static boolean isValidRoute(Graph graph, RouteResult route, City start, City end, List<City> stops) {
+        List<City> path = route.getPath();
+        if (path.isEmpty() || !path.get(0).equals(start) || !path.get(path.size() - 1).equals(end)
+                || !path.containsAll(stops)) {
+            return false;
+        }
+        
+        double total = 0;
+        for (int i = 1; i < path.size(); i++) {
+            total += graph.getShortestDistance(path.get(i - 1), path.get(i));
+        }
+        return total == route.getTotalDistance();
+    }
+
+    private static void check(String name, boolean passed) {
+        checks++;
+        if (!passed) {
+            failures++;
+            System.out.println("FAIL: " + name);
+        }
+    }
+}
@@ -12,6 +12,10 @@ public class TSPOptimizer {
     private final int[][] next; // Next array to reconstruct the path
     private final int n; // Number of nodes
     private final int INF = Integer.MAX_VALUE / 2;
+    private static final int UNREACHABLE = Integer.MAX_VALUE / 2; // Same as INF, for the static lean solver
+    private static final int LEAN_MAX_STOPS = 26; // Largest k with k * 2^k below Integer.MAX_VALUE
+    private static final int BYTES_PER_STATE = Integer.BYTES + Byte.BYTES; // One distance and one predecessor
+    private static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024; // Upper limit for the lean solver's tables
     
     /**
      * Constructs a TSPOptimizer for the given cities.
@@ -149,4 +153,195 @@ public class TSPOptimizer {
         TSPOptimizer optimizer = new TSPOptimizer(graph, allCities);
         return optimizer.solve(0, n - 1, cityIndices);
     }
+    
+    /**
+     * Optimizes the route with a memory-lean Held-Karp solver, using the default memory budget
+     * (256 MB, or half of the maximum heap if that is smaller).
+     * 
+     * @param graph         the graph of cities, with shortest paths computed
+     * @param start         the starting city
+     * @param end           the ending city
+     * @param citiesToVisit the list of cities to visit (excluding start and end)
+     * @return the optimal route result, or a nearest-neighbour route if the tables would not fit the budget
+     */
+    public static RouteResult optimizeRouteLean(Graph graph, City start, City end, List<City> citiesToVisit) {
+        long budget = Math.min(DEFAULT_MEMORY_BUDGET, Runtime.getRuntime().maxMemory() / 2);
+        return optimizeRouteLean(graph, start, end, citiesToVisit, budget);
+    }
+    
+    /**
+     * Optimizes the route with a memory-lean Held-Karp solver.
+     * The fixed start and end are not part of the subset mask, so k stops need k * 2^k states
+     * instead of (k + 2) * 2^(k + 2). All states live in one flat int array indexed by
+     * mask * k + last, with the predecessor of each state in a parallel byte array.
+     * Distances between the stops are copied into a local matrix once, so the inner loop
+     * never goes through the graph.
+     * 
+     * @param graph         the graph of cities, with shortest paths computed
+     * @param start         the starting city
+     * @param end           the ending city
+     * @param citiesToVisit the list of cities to visit (excluding start and end)
+     * @param memoryBudget  the most bytes the DP tables may take
+     * @return the optimal route result, or a nearest-neighbour route if the tables would not fit the budget
+     */
+    public static RouteResult optimizeRouteLean(Graph graph, City start, City end, List<City> citiesToVisit,
+                                                long memoryBudget) {
+        int k = citiesToVisit.size();
+        
+        // Copy the distances once: stop i to stop j, start to stop j, and stop i to end
+        int[] cost = new int[k * k];
+        int[] startCost = new int[k];
+        int[] endCost = new int[k];
+        for (int i = 0; i < k; i++) {
+            City city = citiesToVisit.get(i);
+            startCost[i] = graph.getShortestDistance(start, city);
+            endCost[i] = graph.getShortestDistance(city, end);
+            for (int j = 0; j < k; j++) {
+                cost[i * k + j] = graph.getShortestDistance(city, citiesToVisit.get(j));
+            }
+        }
+        
+        int[] order;
+        long memory = estimateLeanMemory(k);
+        if (memory <= memoryBudget) {
+            order = solveLean(k, cost, startCost, endCost);
+        } else {
+            System.out.println("TSP tables for " + k + " stops need about " + (memory >> 20)
+                    + " MB; using nearest-neighbour order instead");
+            order = nearestNeighbourOrder(k, cost, startCost);
+        }
+        
+        // Build the stop sequence and add up its length
+        List<City> path = new ArrayList<>(k + 2);
+        path.add(start);
+        long totalDistance = 0;
+        int previous = -1;
+        for (int stop : order) {
+            path.add(citiesToVisit.get(stop));
+            totalDistance += previous < 0 ? startCost[stop] : cost[previous * k + stop];
+            previous = stop;
+        }
+        path.add(end);
+        totalDistance += previous < 0 ? graph.getShortestDistance(start, end) : endCost[previous];
+        
+        return new RouteResult(path, totalDistance);
+    }
+    
+    /**
+     * Estimates the memory taken by the lean solver's DP tables.
+     * 
+     * @param stops the number of stops, excluding start and end
+     * @return the size in bytes, or Long.MAX_VALUE if the tables cannot be indexed by an int
+     */
+    public static long estimateLeanMemory(int stops) {
+        if (stops > LEAN_MAX_STOPS) {
+            return Long.MAX_VALUE;
+        }
+        return ((long) stops << stops) * BYTES_PER_STATE;
+    }
+    
+    /**
+     * Runs Held-Karp over the stops only. Each state is computed from the states one stop smaller,
+     * which always have a smaller mask, so every entry is written exactly once and
+     * the tables need no initial fill.
+     * 
+     * @param k         the number of stops
+     * @param cost      the k x k stop distances, row by row
+     * @param startCost the distance from the start to each stop
+     * @param endCost   the distance from each stop to the end
+     * @return the stop indices in visiting order
+     */
+    private static int[] solveLean(int k, int[] cost, int[] startCost, int[] endCost) {
+        if (k == 0) {
+            return new int[0];
+        }
+        
+        int fullMask = (1 << k) - 1;
+        int[] dp = new int[(fullMask + 1) * k]; // dp[mask * k + last]
+        byte[] previousStop = new byte[(fullMask + 1) * k]; // -1 when the previous city is the start
+        
+        for (int mask = 1; mask <= fullMask; mask++) {
+            for (int last = 0; last < k; last++) {
+                int lastBit = 1 << last;
+                if ((mask & lastBit) == 0) {
+                    continue;
+                }
+                
+                int state = mask * k + last;
+                int rest = mask & ~lastBit;
+                if (rest == 0) {
+                    dp[state] = startCost[last];
+                    previousStop[state] = -1;
+                    continue;
+                }
+                
+                // Distances are capped at UNREACHABLE, so the sum of two never overflows
+                int best = Integer.MAX_VALUE;
+                int bestPrevious = -1;
+                int base = rest * k;
+                for (int bits = rest; bits != 0; bits &= bits - 1) {
+                    int previous = Integer.numberOfTrailingZeros(bits);
+                    int candidate = Math.min(UNREACHABLE, dp[base + previous] + cost[previous * k + last]);
+                    if (candidate < best) {
+                        best = candidate;
+                        bestPrevious = previous;
+                    }
+                }
+                dp[state] = best;
+                previousStop[state] = (byte) bestPrevious;
+            }
+        }
+        
+        // Pick the last stop before the end
+        int last = 0;
+        int best = Integer.MAX_VALUE;
+        for (int j = 0; j < k; j++) {
+            int total = Math.min(UNREACHABLE, dp[fullMask * k + j] + endCost[j]);
+            if (total < best) {
+                best = total;
+                last = j;
+            }
+        }
+        
+        // Follow the predecessors back to the start
+        int[] order = new int[k];
+        int mask = fullMask;
+        for (int position = k - 1; position >= 0; position--) {
+            order[position] = last;
+            int previous = previousStop[mask * k + last];
+            mask &= ~(1 << last);
+            last = previous;
+        }
+        return order;
+    }
+    
+    /**
+     * Orders the stops by always moving to the closest unvisited one.
+     * Used when the exact tables would not fit the memory budget.
+     * 
+     * @param k         the number of stops
+     * @param cost      the k x k stop distances, row by row
+     * @param startCost the distance from the start to each stop
+     * @return the stop indices in visiting order
+     */
+    private static int[] nearestNeighbourOrder(int k, int[] cost, int[] startCost) {
+        int[] order = new int[k];
+        boolean[] visited = new boolean[k];
+        int current = -1;
+        for (int step = 0; step < k; step++) {
+            int next = -1;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int j = 0; j < k; j++) {
+                int distance = current < 0 ? startCost[j] : cost[current * k + j];
+                if (!visited[j] && distance < bestDistance) {
+                    next = j;
+                    bestDistance = distance;
+                }
+            }
+            order[step] = next;
+            visited[next] = true;
+            current = next;
+        }
+        return order;
+    }
 } 
\ No newline at end of file